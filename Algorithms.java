@@ -43,11 +43,8 @@ public class Algorithms{
         }
     }
 
-    // sumOfFirstNumbers tests the code for calculating the sum of first N numbers
-    private static void sumOfFirstNumbers() {
-        System.out.println("sum of first N numbers: ");
-        // Swift code for summing first N numbers
-        String code = """
+    // Swift code for summing first N numbers
+    static final String SUM_OF_FIRST_NUMBERS = """
         var sum = 0
         var n = 10
         var i = 1
@@ -56,14 +53,15 @@ public class Algorithms{
             i = i + 1
         }
         print(sum)""";
-        executeCode(code);
+
+    // sumOfFirstNumbers tests the code for calculating the sum of first N numbers
+    private static void sumOfFirstNumbers() {
+        System.out.println("sum of first N numbers: ");
+        executeCode(SUM_OF_FIRST_NUMBERS);
     }
 
-    // factorialOfNumber tests the code for calculating the factorial of a number
-    private static void factorialOfNumber() {
-        System.out.println("Factorial of a number: ");
-        // Swift code for calculating factorial
-        String code = """
+    // Swift code for calculating factorial
+    static final String FACTORIAL_OF_NUMBER = """
                 var n = 5
                 var factorial = 1
                 var i = 1
@@ -73,14 +71,15 @@ public class Algorithms{
                 }
                 print(factorial)
                 """;
-        executeCode(code);
+
+    // factorialOfNumber tests the code for calculating the factorial of a number
+    private static void factorialOfNumber() {
+        System.out.println("Factorial of a number: ");
+        executeCode(FACTORIAL_OF_NUMBER);
     }
 
-    // gcd tests the code for calculating the greatest common divisor (GCD)
-    private static void gcd() {
-        System.out.println("gcd: ");
-        // Swift code for calculating the GCD of two numbers
-        String code = """
+    // Swift code for calculating the GCD of two numbers
+    static final String GCD = """
         var x = 56
         var y = 98
         while y != 0 {
@@ -90,14 +89,15 @@ public class Algorithms{
         if x < 0 {
         x = -x}
         print(x)""";
-        executeCode(code);
+
+    // gcd tests the code for calculating the greatest common divisor (GCD)
+    private static void gcd() {
+        System.out.println("gcd: ");
+        executeCode(GCD);
     }
 
-    // reverseNumber tests the code for reversing a number
-    private static void reverseNumber() {
-        System.out.println("reverseNumber: ");
-        // Swift code for reversing a number
-        String code = """
+    // Swift code for reversing a number
+    static final String REVERSE_NUMBER = """
         var n = 56
         var reversed = 0
         while n != 0 {
@@ -106,14 +106,15 @@ public class Algorithms{
         reversed = reversed + digit
         n = n / 10}
         print(reversed)""";
-        executeCode(code);
+
+    // reverseNumber tests the code for reversing a number
+    private static void reverseNumber() {
+        System.out.println("reverseNumber: ");
+        executeCode(REVERSE_NUMBER);
     }
 
-    // isPalindrome tests the code for checking if a number is a palindrome
-    private static void isPalindrome() {
-        System.out.println("isPalindrome: ");
-        // Swift code for checking if a number is a palindrome
-        String code = """
+    // Swift code for checking if a number is a palindrome
+    static final String IS_PALINDROME = """
         var n = 11112
         var reversed = 0
         var original = n
@@ -127,14 +128,15 @@ public class Algorithms{
         print("true")} else {
         print("false")
         }""";
-        executeCode(code);
+
+    // isPalindrome tests the code for checking if a number is a palindrome
+    private static void isPalindrome() {
+        System.out.println("isPalindrome: ");
+        executeCode(IS_PALINDROME);
     }
 
-    // fibonacci tests the code for generating Fibonacci numbers
-    private static void fibonacci() {
-        System.out.println("fibonacci: ");
-        // Swift code for generating the nth Fibonacci number
-        String code = """
+    // Swift code for generating the nth Fibonacci number
+    static final String FIBONACCI = """
         var N = 10
         var a = 0
         var b = 1
@@ -146,14 +148,15 @@ public class Algorithms{
         count = count + 1
         }
         print(b)""";
-        executeCode(code);
+
+    // fibonacci tests the code for generating Fibonacci numbers
+    private static void fibonacci() {
+        System.out.println("fibonacci: ");
+        executeCode(FIBONACCI);
     }
 
-    // isPrime tests the code for checking if a number is prime
-    private static void isPrime() {
-        System.out.println("isPrime: ");
-        // Swift code for checking if a number is prime
-        String code = """
+    // Swift code for checking if a number is prime
+    static final String IS_PRIME = """
                 var num = 5
                             var isPrime = 1
                            
@@ -165,6 +168,7 @@ public class Algorithms{
                             while i * i <= num {
                                 if num % i == 0 {
                                     isPrime = 0
+                                    break
                                 }
                                 i = i + 1
                             }
@@ -179,14 +183,15 @@ public class Algorithms{
                                 print("no it is not prime number")
                             }
                 """;
-        executeCode(code);
+
+    // isPrime tests the code for checking if a number is prime
+    private static void isPrime() {
+        System.out.println("isPrime: ");
+        executeCode(IS_PRIME);
     }
 
-    // multable tests the code for printing the multiplication table of a number
-    private static void multable() {
-        System.out.println("mutable: ");
-        // Swift code for printing the multiplication table of a number
-        String code = """
+    // Swift code for printing the multiplication table of a number
+    static final String MULTABLE = """
                 var number = 5
                 var i = 1
                 var toPrint = 0
@@ -194,14 +199,15 @@ public class Algorithms{
                 toPrint = number * i
                 print(toPrint)
                 i = i + 1}""";
-        executeCode(code);
+
+    // multable tests the code for printing the multiplication table of a number
+    private static void multable() {
+        System.out.println("mutable: ");
+        executeCode(MULTABLE);
     }
 
-    // sumDigits tests the code for summing the digits of a number
-    private static void sumDigits() {
-        System.out.println("sum digits: ");
-        // Swift code for summing the digits of a number
-        String code = """
+    // Swift code for summing the digits of a number
+    static final String SUM_DIGITS = """
                 var number = 12345
                 var sum = 0
                 while number > 0 {
@@ -210,14 +216,15 @@ public class Algorithms{
                  number = number / 10
                 }
                 print(sum)""";
-        executeCode(code);
+
+    // sumDigits tests the code for summing the digits of a number
+    private static void sumDigits() {
+        System.out.println("sum digits: ");
+        executeCode(SUM_DIGITS);
     }
 
-    // findbigdigit tests the code for finding the largest digit in a number
-    private static void findbigdigit() {
-        System.out.println("find big digit: ");
-        // Swift code for finding the largest digit in a number
-        String code = """
+    // Swift code for finding the largest digit in a number
+    static final String FIND_BIG_DIGIT = """
                 let number = 12345
                 var biggestDigit = 0
                                                 
@@ -230,6 +237,24 @@ public class Algorithms{
                 }
                                                 
                 print(biggestDigit)""";
-        executeCode(code);
+
+    // findbigdigit tests the code for finding the largest digit in a number
+    private static void findbigdigit() {
+        System.out.println("find big digit: ");
+        executeCode(FIND_BIG_DIGIT);
     }
+
+    // The programs main runs, by name, in the same order. CostRegression checks the work they take.
+    static final String[][] PROGRAMS = {
+            {"sumOfFirstNumbers", SUM_OF_FIRST_NUMBERS},
+            {"factorialOfNumber", FACTORIAL_OF_NUMBER},
+            {"gcd", GCD},
+            {"reverseNumber", REVERSE_NUMBER},
+            {"isPalindrome", IS_PALINDROME},
+            {"fibonacci", FIBONACCI},
+            {"multable", MULTABLE},
+            {"sumDigits", SUM_DIGITS},
+            {"findbigdigit", FIND_BIG_DIGIT},
+            {"isPrime", IS_PRIME},
+    };
 }
@@ -0,0 +1,458 @@
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Benchmark measures how long the interpreter takes to run Swift programs.
+// Programs are tokenized once and then executed many times, the interpreter's own output is discarded while timing.
+public class Benchmark {
+    private static final int WARMUP_RUNS = 200; // Runs before timing, so the JIT compiler has optimized the interpreter.
+    private static final int MEASURED_RUNS = 200; // Runs that are timed.
+
+    public static void main(String[] args) {
+        // Counted loops written with while and with for, over the same number of iterations
+        compare("sumOfFirstNumbers", """
+                var sum = 0
+                var n = 5000
+                var i = 1
+                while i <= n {
+                    sum = sum + i
+                    i = i + 1
+                }
+                print(sum)""", """
+                var sum = 0
+                var n = 5000
+                for i in 1...n {
+                    sum = sum + i
+                }
+                print(sum)""");
+        compare("factorialOfNumber", """
+                var n = 5000
+                var factorial = 1
+                var i = 1
+                while i <= n {
+                    factorial = factorial * i % 10007
+                    i = i + 1
+                }
+                print(factorial)""", """
+                var n = 5000
+                var factorial = 1
+                for i in 1...n {
+                    factorial = factorial * i % 10007
+                }
+                print(factorial)""");
+        compare("multable", """
+                var number = 5
+                var i = 1
+                var toPrint = 0
+                while i <= 5000 {
+                    toPrint = number * i
+                    i = i + 1
+                }
+                print(toPrint)""", """
+                var number = 5
+                var toPrint = 0
+                for i in 1...5000 {
+                    toPrint = number * i
+                }
+                print(toPrint)""");
+        compound();
+        reduction("sum 1...10^6", """
+                var sum = 0
+                for i in 1...1000000 {
+                    sum = sum + i
+                }""");
+        reduction("primes 2...50000", """
+                var count = 0
+                for n in 2...50000 {
+                    var isPrime = 1
+                    var i = 2
+                    while i * i <= n {
+                        if n % i == 0 {
+                            isPrime = 0
+                            break
+                        }
+                        i = i + 1
+                    }
+                    if isPrime == 1 {
+                        count = count + 1
+                    }
+                }""");
+        profiler();
+        listeners();
+        sharedGlobals();
+        lexer();
+        tokenMemory();
+        preparedScript();
+        batch();
+        library();
+    }
+
+    // sharedGlobals runs interpreters on several threads that all count into the same shared global
+    private static void sharedGlobals() {
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final int runs = 2000;
+        SharedGlobals globals = new SharedGlobals();
+        globals.set("hits", 0L);
+        List<Token> tokens = new Tokenizer("""
+                for i in 1...100 {
+                    hits += 1
+                }""").tokenize();
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                SwiftInterpreter interpreter = new SwiftInterpreter(tokens, globals);
+                for (int run = 0; run < runs; run++) {
+                    interpreter.execute();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-20s %d threads x %d runs: %8.3f ms   hits: %d of %d%n",
+                "shared globals", threads, runs, millis, globals.get("hits"), (long) threads * runs * 100);
+    }
+
+    // largeSource returns a large source for the tokenizer benchmarks
+    private static String largeSource() {
+        return (REVERSE_NUMBERS + "\n// comment\n" + IS_PRIME + "\nprint(\"total = \\(total)\")\n").repeat(2000);
+    }
+
+    // lexer compares the throughput of the tokenizer with and without its character class tables
+    private static void lexer() {
+        String sourceCode = largeSource();
+        double characterMethods = lexingMegabytesPerSecond(sourceCode, false);
+        double tables = lexingMegabytesPerSecond(sourceCode, true);
+        System.out.printf("%-20s Character: %8.1f MB/s   tables: %8.1f MB/s   speedup: %.2fx%n",
+                "lexer " + sourceCode.length() / 1024 + " KB", characterMethods, tables, tables / characterMethods);
+    }
+
+    // tokenMemory compares the heap used by the tokens of a large source in a TokenBuffer with one Token object
+    // and one value String per token, like the tokenizer created them before the buffer
+    private static void tokenMemory() {
+        Tokenizer tokenizer = new Tokenizer(largeSource());
+        long start = usedMemory();
+        TokenBuffer buffer = tokenizer.tokenize();
+        long bufferBytes = usedMemory() - start;
+        List<Token> objects = new ArrayList<>(buffer.size());
+        for (Token token : buffer) {
+            objects.add(new Token(token.type, new String(token.value), token.offset, token.lines));
+        }
+        long objectBytes = usedMemory() - start - bufferBytes;
+        System.out.printf("%-20s objects: %6.1f bytes   buffer: %6.1f bytes   per token (%d tokens)%n",
+                "token memory", (double) objectBytes / objects.size(), (double) bufferBytes / buffer.size(),
+                buffer.size());
+    }
+
+    // usedMemory returns the heap used after a garbage collection
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // lexingMegabytesPerSecond returns how many megabytes of source one tokenizer scans per second
+    private static double lexingMegabytesPerSecond(String sourceCode, boolean tables) {
+        final int runs = 20;
+        for (int i = 0; i < runs; i++) {
+            new Tokenizer(sourceCode, tables).tokenize();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            new Tokenizer(sourceCode, tables).tokenize();
+        }
+        return (double) sourceCode.length() * runs / (1 << 20) / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // reverses the digits of 2000 numbers, without printing
+    private static final String REVERSE_NUMBERS = """
+            var total = 0
+            for k in 1...2000 {
+                var n = k * 1000003
+                var reversed = 0
+                while n != 0 {
+                    var digit = n % 10
+                    reversed = reversed * 10 + digit
+                    n = n / 10
+                }
+                total = total + reversed
+            }""";
+
+    // listeners compares a program before, while and after an ExecutionListener that does nothing is attached
+    private static void listeners() {
+        SwiftProgram program = new SwiftCompiler(new Tokenizer(REVERSE_NUMBERS).tokenize(), List.of()).compile();
+        double beforeMillis = timeCompiled(program);
+        Instrumentation instrumentation = new Instrumentation();
+        instrumentation.add(new ExecutionListener() {
+        });
+        instrumentation.attach(program);
+        double attachedMillis = timeCompiled(program);
+        instrumentation.detach(program);
+        double afterMillis = timeCompiled(program);
+        System.out.printf("%-20s before: %8.3f ms   attached: %8.3f ms   detached: %8.3f ms%n",
+                "listener", beforeMillis, attachedMillis, afterMillis);
+    }
+
+    // profiler compares a program running without and with a ScriptProfiler sampling it every millisecond
+    private static void profiler() {
+        SwiftProgram program = new SwiftCompiler(new Tokenizer(REVERSE_NUMBERS).tokenize(), List.of()).compile();
+        double plainMillis = timeCompiled(program);
+        ScriptProfiler profiler = new ScriptProfiler();
+        profiler.attach(program);
+        profiler.start();
+        double sampledMillis;
+        try {
+            sampledMillis = timeCompiled(program);
+        } finally {
+            profiler.stop();
+            profiler.detach(program);
+        }
+        System.out.printf("%-20s plain: %8.3f ms   sampled: %8.3f ms   overhead: %5.1f%%   (%d samples)%n",
+                "profiler 1 ms", plainMillis, sampledMillis, (sampledMillis / plainMillis - 1) * 100,
+                profiler.sampleCount());
+    }
+
+    // reduction compares a reduction loop running in order with running it on the common fork/join pool
+    private static void reduction(String name, String sourceCode) {
+        SwiftProgram program = new SwiftCompiler(new Tokenizer(sourceCode).tokenize(), List.of()).compile();
+        SwiftProgram inOrder = new SwiftProgram(new SwiftNodes.BlockNode(program.body.token,
+                Arrays.stream(program.body.children())
+                        .map(statement -> statement instanceof SwiftNodes.ReductionNode
+                                ? ((SwiftNodes.ReductionNode) statement).loop : (SwiftNodes.StatementNode) statement)
+                        .toArray(SwiftNodes.StatementNode[]::new)), program.slotCount, program.globalSlots);
+        double inOrderMillis = timeCompiled(inOrder);
+        double parallelMillis = timeCompiled(program);
+        System.out.printf("%-20s in order: %8.3f ms   parallel: %8.3f ms   speedup: %.2fx   (%d threads)%n",
+                name, inOrderMillis, parallelMillis, inOrderMillis / parallelMillis,
+                ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    // compound compares a counted while loop that updates its variables with x = x + v and with x += v
+    private static void compound() {
+        PreparedScript assignment = PreparedScript.prepare("""
+                var sum = 0
+                var i = 0
+                while i < 10000 {
+                    sum = sum + i
+                    i = i + 1
+                }""");
+        PreparedScript compound = PreparedScript.prepare("""
+                var sum = 0
+                var i = 0
+                while i < 10000 {
+                    sum += i
+                    i++
+                }""");
+        long checksum = 0;
+        double assignmentMicros = 0;
+        double compoundMicros = 0;
+        for (int round = 0; round < 5; round++) { // The first rounds are warmup, the last one is reported.
+            long start = System.nanoTime();
+            for (int run = 0; run < 1000; run++) {
+                checksum += assignment.execute(new long[0]).getLong("sum");
+            }
+            assignmentMicros = (System.nanoTime() - start) / 1e3 / 1000;
+            start = System.nanoTime();
+            for (int run = 0; run < 1000; run++) {
+                checksum -= compound.execute(new long[0]).getLong("sum");
+            }
+            compoundMicros = (System.nanoTime() - start) / 1e3 / 1000;
+        }
+        System.out.printf("%-20s x = x + v: %8.1f us   x += v: %8.1f us   (checksum %d)%n",
+                "compound 10^4", assignmentMicros, compoundMicros, checksum);
+    }
+
+    // timeCompiled returns the average time of one execution of a compiled program in milliseconds
+    private static double timeCompiled(SwiftProgram program) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            program.body.execute(new Frame(program.slotCount));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            program.body.execute(new Frame(program.slotCount));
+        }
+        return (System.nanoTime() - start) / 1e6 / MEASURED_RUNS;
+    }
+
+    // batch compares executing a straight-line script once per input with one batch over the whole column
+    private static void batch() {
+        PreparedScript script = PreparedScript.prepare("""
+                var y = x * 3 + 7 % 11
+                var z = y * y - x""", "x");
+        long[] inputs = new long[1_000_000];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = i;
+        }
+        long checksum = 0;
+        double callMillis = 0;
+        double batchMillis = 0;
+        for (int round = 0; round < 5; round++) { // The first rounds are warmup, the last one is reported.
+            long start = System.nanoTime();
+            for (long input : inputs) {
+                checksum += script.execute(input).getLong("z");
+            }
+            callMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            for (long output : script.executeBatch(inputs, "z")) {
+                checksum -= output;
+            }
+            batchMillis = (System.nanoTime() - start) / 1e6;
+        }
+        System.out.printf("%-20s calls: %8.3f ms   batch: %8.3f ms   (checksum %d)%n",
+                "batch 10^6 inputs", callMillis, batchMillis, checksum);
+    }
+
+    // isPrime without printing, num is an input parameter
+    private static final String IS_PRIME = """
+            var isPrime = 1
+            if num <= 1 {
+                isPrime = 0
+            }
+            var i = 2
+            while i * i <= num {
+                if num % i == 0 {
+                    isPrime = 0
+                    break
+                }
+                i = i + 1
+            }""";
+
+    // preparedScript compares a prepared isPrime with editing, tokenizing and interpreting the source for every input
+    private static void preparedScript() {
+        final int inputs = 20000;
+        PreparedScript script = PreparedScript.prepare(IS_PRIME, "num");
+        long primes = 0;
+        for (int num = 1; num <= inputs; num++) { // Warmup
+            primes += script.execute(num).getLong("isPrime");
+        }
+        long start = System.nanoTime();
+        for (int num = 1; num <= inputs; num++) {
+            primes += script.execute(num).getLong("isPrime");
+        }
+        double preparedNanos = (double) (System.nanoTime() - start) / inputs;
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Discarding the interpreter's output
+        start = System.nanoTime();
+        try {
+            for (int num = 1; num <= inputs; num++) {
+                String sourceCode = "var num = " + num + "\n" + IS_PRIME;
+                run(sourceCode);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        double sourceNanos = (double) (System.nanoTime() - start) / inputs;
+        System.out.printf("%-20s source: %8.0f ns   prepared: %8.0f ns   per call (%d primes counted)%n",
+                "isPrime 1.." + inputs, sourceNanos, preparedNanos, primes / 2);
+    }
+
+    // primes up to 20000, the helper of the library benchmark
+    private static final String PRIMES = """
+            var primes = [2]
+            for candidate in 3...20000 {
+                var isPrime = 1
+                var i = 0
+                while primes[i] * primes[i] <= candidate {
+                    if candidate % primes[i] == 0 {
+                        isPrime = 0
+                        break
+                    }
+                    i = i + 1
+                }
+                if isPrime == 1 {
+                    primes.append(candidate)
+                }
+            }""";
+
+    // counts the primes up to limit, with the primes of PRIMES
+    private static final String COUNT_PRIMES = """
+            var count = 0
+            for i in 0..<primes.count {
+                if primes[i] <= limit {
+                    count = count + 1
+                }
+            }
+            print(count)""";
+
+    // library compares programs that contain the PRIMES helper with programs that import it from a ScriptLibrary,
+    // every program is a new source that is tokenized, compiled and run once
+    private static void library() {
+        final int programs = 200;
+        ScriptLibrary.define("primes", PRIMES);
+        PrintStream out = System.out;
+        ByteArrayOutputStream pastedOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream importedOutput = new ByteArrayOutputStream();
+        double pastedMillis;
+        double importedMillis;
+        try {
+            System.setOut(new PrintStream(pastedOutput));
+            long start = System.nanoTime();
+            for (int limit = 1; limit <= programs; limit++) {
+                run("var limit = " + limit * 100 + "\n" + PRIMES + "\n" + COUNT_PRIMES);
+            }
+            pastedMillis = (System.nanoTime() - start) / 1e6 / programs;
+            System.setOut(new PrintStream(importedOutput));
+            start = System.nanoTime();
+            for (int limit = 1; limit <= programs; limit++) {
+                run("var limit = " + limit * 100 + "\nimport primes\n" + COUNT_PRIMES);
+            }
+            importedMillis = (System.nanoTime() - start) / 1e6 / programs;
+        } finally {
+            System.setOut(out);
+        }
+        System.out.printf("%-20s pasted: %8.3f ms   imported: %8.3f ms   per program (same output: %b)%n",
+                "library primes", pastedMillis, importedMillis, pastedOutput.toString().equals(importedOutput.toString()));
+    }
+
+    // run tokenizes a source and executes it once
+    private static void run(String sourceCode) {
+        execute(new Tokenizer(sourceCode).tokenize());
+    }
+
+    // execute compiles and runs tokens once with a new interpreter
+    private static void execute(List<Token> tokens) {
+        new SwiftInterpreter(tokens).execute();
+    }
+
+    // compare times two versions of the same program and prints both results
+    private static void compare(String name, String whileCode, String forCode) {
+        double whileMillis = time(whileCode);
+        double forMillis = time(forCode);
+        System.out.printf("%-20s while: %8.3f ms   for: %8.3f ms   speedup: %.2fx%n",
+                name, whileMillis, forMillis, whileMillis / forMillis);
+    }
+
+    // time returns the average time of one execution of the program in milliseconds
+    private static double time(String sourceCode) {
+        List<Token> tokens = new Tokenizer(sourceCode).tokenize();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Discarding the interpreter's output
+        try {
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                execute(tokens);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                execute(tokens);
+            }
+            return (System.nanoTime() - start) / 1e6 / MEASURED_RUNS;
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
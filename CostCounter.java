@@ -0,0 +1,54 @@
+// This class counts the work a program does, as a measure that does not depend on the speed of the host.
+// The nodes count while they run, on the tree that actually runs (reduced and unchecked bodies included):
+// - statements executed;
+// - expression and condition nodes evaluated, the side of && and || that is not evaluated does not count;
+// - scopes pushed, every block that is entered;
+// - objects created for values: numbers boxed for a generic operation, results of generic arithmetic,
+//   strings that are concatenated, and arrays that are created or copied;
+// - loop iterations.
+// While an execution is counted, reductions run in order, so the counts do not depend on the number of
+// processors, and the counts are the same on every run of the same program (see CostRegression).
+// Set it with SwiftInterpreter.setCostCounter(), the counts add up over the executions until reset() is called.
+class CostCounter {
+    long statements;
+    long expressions;
+    long scopes;
+    long allocations;
+    long iterations;
+
+    long statements() {
+        return statements;
+    }
+
+    long expressions() {
+        return expressions;
+    }
+
+    long scopes() {
+        return scopes;
+    }
+
+    long allocations() {
+        return allocations;
+    }
+
+    long iterations() {
+        return iterations;
+    }
+
+    // Sets all counts to 0.
+    void reset() {
+        statements = 0;
+        expressions = 0;
+        scopes = 0;
+        allocations = 0;
+        iterations = 0;
+    }
+
+    // Returns the counts as one line.
+    @Override
+    public String toString() {
+        return String.format("statements=%d, expressions=%d, scopes=%d, allocations=%d, iterations=%d",
+                statements, expressions, scopes, allocations, iterations);
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// CostRegression runs every Algorithms program with a CostCounter and compares the counts with the expected ones.
+// Unlike the times of Benchmark, the counts do not depend on the host, so a change that makes the interpreter
+// do more work is found on every run. It exits with status 1 if a count is more than TOLERANCE above its
+// expected value; counts below it are reported, so the expected values can be lowered.
+// The programs run without the debug lines, so the counts are those of the tree that normally runs,
+// with its unchecked loop bodies.
+// After a change that is meant to change the counts, run it with --baseline and replace EXPECTED by the output.
+public class CostRegression {
+    private static final double TOLERANCE = 0.02; // Share a count may be above the expected count.
+    private static final String[] COUNTS = {"statements", "expressions", "scopes", "allocations"};
+
+    // Expected counts of the Algorithms programs, in the order of Algorithms.PROGRAMS:
+    // statements, expressions, scopes, allocations.
+    private static final long[][] EXPECTED = {
+            {25, 97, 11, 8}, // sumOfFirstNumbers
+            {15, 52, 6, 8}, // factorialOfNumber
+            {17, 41, 5, 8}, // gcd
+            {12, 36, 3, 11}, // reverseNumber
+            {26, 85, 7, 13}, // isPalindrome
+            {38, 96, 9, 10}, // fibonacci
+            {34, 106, 11, 16}, // multable
+            {19, 66, 6, 9}, // sumDigits
+            {20, 67, 7, 9}, // findbigdigit
+            {11, 32, 3, 13}, // isPrime
+    };
+
+    public static void main(String[] args) {
+        boolean baseline = args.length > 0 && args[0].equals("--baseline");
+        int failures = 0;
+        for (int i = 0; i < Algorithms.PROGRAMS.length; i++) {
+            String name = Algorithms.PROGRAMS[i][0];
+            long[] counts = counts(Algorithms.PROGRAMS[i][1]);
+            if (baseline) {
+                System.out.printf("            {%d, %d, %d, %d}, // %s%n", counts[0], counts[1], counts[2], counts[3],
+                        name);
+                continue;
+            }
+            for (int c = 0; c < COUNTS.length; c++) {
+                long expected = i < EXPECTED.length ? EXPECTED[i][c] : 0;
+                if (counts[c] > expected * (1 + TOLERANCE)) {
+                    System.out.printf("FAIL  %-20s %-12s %8d, expected %d%n", name, COUNTS[c], counts[c], expected);
+                    failures++;
+                } else if (counts[c] < expected) {
+                    System.out.printf("LOWER %-20s %-12s %8d, expected %d%n", name, COUNTS[c], counts[c], expected);
+                }
+            }
+        }
+        if (baseline) {
+            return;
+        }
+        System.out.println(failures == 0 ? "All counts are within the expected costs."
+                : failures + " counts are above the expected costs.");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // counts runs a program with its output discarded and returns the counts in the order of COUNTS
+    static long[] counts(String sourceCode) {
+        CostCounter counter = new CostCounter();
+        SwiftInterpreter interpreter = new SwiftInterpreter(new Tokenizer(sourceCode).tokenize());
+        interpreter.setCostCounter(counter);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            interpreter.execute();
+        } finally {
+            System.setOut(out);
+        }
+        return new long[]{counter.statements(), counter.expressions(), counter.scopes(), counter.allocations()};
+    }
+}
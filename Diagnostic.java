@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// This class describes one error in a script: where it is and what is wrong.
+// The message is kept as a format string with its arguments and is only formatted when it is rendered,
+// so finding an error that nobody looks at does not build any strings.
+final class Diagnostic {
+    final String format; // Message with %s placeholders for the arguments.
+    final Object[] arguments; // Values of the placeholders.
+    final int offset; // Offset of the error in the source code.
+    private final LineIndex lines; // Line starts of the source code, null when line and column were given.
+    private int line; // Line of the error, 0 until it is looked up, or as given when lines is null.
+    private int column; // Column of the error.
+
+    // Constructor: the line and column of the offset are looked up when they are needed.
+    Diagnostic(String format, int offset, LineIndex lines, Object... arguments) {
+        this.format = format;
+        this.arguments = arguments;
+        this.offset = offset;
+        this.lines = lines;
+    }
+
+    // Constructor for an error at the start of a token.
+    Diagnostic(String format, Token token, Object... arguments) {
+        this(format, token.offset, token.lines, arguments);
+    }
+
+    // Constructor for an error with a known line and column.
+    Diagnostic(String message, int line, int column) {
+        this(message, 0, null);
+        this.line = line;
+        this.column = column;
+    }
+
+    // Returns the line of the error.
+    int line() {
+        if (line == 0 && lines != null) {
+            line = lines.line(offset);
+            column = lines.column(offset);
+        }
+        return line;
+    }
+
+    // Returns the column of the error.
+    int column() {
+        line();
+        return column;
+    }
+
+    // Returns the message without the position.
+    String message() {
+        return arguments.length == 0 ? format : String.format(format, arguments);
+    }
+
+    // Returns the message with the position, in the format the interpreter prints errors.
+    String render() {
+        return "Error at line " + line() + ", column " + column() + ": " + message();
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+
+    // Checks a script without running it and returns all errors that the tokenizer and the compiler found,
+    // ordered by position. Both continue after an error, so one pass reports every error instead of the first.
+    static List<Diagnostic> check(String sourceCode) {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        List<Token> tokens = new Tokenizer(sourceCode).tokenize(diagnostics);
+        new SwiftCompiler(tokens, List.of()).compile(diagnostics);
+        diagnostics.sort(Comparator.comparingInt(Diagnostic::line).thenComparingInt(Diagnostic::column));
+        return diagnostics;
+    }
+}
@@ -0,0 +1,29 @@
+// This interface is notified of the steps a program takes while it runs, for tracing and debugging.
+// Listeners are attached with SwiftInterpreter.addListener(), see Instrumentation for how they are called.
+// All methods are called on the thread that runs the program, before the program continues,
+// so a listener can stop the program by not returning (see ScriptDebugger).
+interface ExecutionListener {
+    // Called before a statement runs, loops and ifs included.
+    default void statementEntered(Token token) {
+    }
+
+    // Called after a declaration, an assignment or a compound assignment wrote a variable.
+    default void variableWritten(Token token, String name, Object value, boolean declaration) {
+    }
+
+    // Called after an assignment wrote an array element, or append added one.
+    default void elementWritten(Token token, String array, long index, Object value) {
+    }
+
+    // Called after print wrote a value.
+    default void printed(Token token, Object value) {
+    }
+
+    // Called before every iteration of a loop, the first iteration is 1. token is the loop's keyword.
+    default void loopIteration(Token token, long iteration) {
+    }
+
+    // Called when the block of an if or of its else is not run. token is the '{' that opens the block.
+    default void blockSkipped(Token token, boolean elseBlock) {
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.PrintStream;
+
+// This class holds the variables of one execution of a compiled program.
+// Every variable has a slot that is resolved when the program is compiled, so no names are looked up while running.
+// Integer and floating point values are kept unboxed in a primitive array, other values in an Object array.
+class Frame {
+    static final byte EMPTY = 0;  // Slot was not written yet.
+    static final byte LONG = 1;   // Slot holds a long in primitives.
+    static final byte DOUBLE = 2; // Slot holds the bits of a double in primitives.
+    static final byte OBJECT = 3; // Slot holds a reference in objects.
+
+    final byte[] kinds; // Kind of value stored in each slot.
+    final long[] primitives; // Values of LONG and DOUBLE slots.
+    final Object[] objects; // Values of OBJECT slots.
+    final PrintStream out; // Stream that print and the debug lines write to.
+    CostCounter cost; // Counts the work of the execution, null when it is not counted.
+
+    // Constructor: creates a frame with the given number of empty slots that prints to System.out.
+    Frame(int slotCount) {
+        this(slotCount, System.out);
+    }
+
+    // Constructor: creates a frame with the given number of empty slots that prints to the given stream.
+    Frame(int slotCount, PrintStream out) {
+        this.kinds = new byte[slotCount];
+        this.primitives = new long[slotCount];
+        this.objects = new Object[slotCount];
+        this.out = out;
+    }
+
+    // Returns a frame with the same values and stream, for work that must not change this frame.
+    Frame copy() {
+        Frame copy = new Frame(kinds.length, out);
+        copy.cost = cost;
+        System.arraycopy(kinds, 0, copy.kinds, 0, kinds.length);
+        System.arraycopy(primitives, 0, copy.primitives, 0, primitives.length);
+        System.arraycopy(objects, 0, copy.objects, 0, objects.length);
+        return copy;
+    }
+
+    // Returns the value of a slot as an object, boxing primitives, or null if the slot is empty.
+    Object get(int slot) {
+        return switch (kinds[slot]) {
+            case LONG -> primitives[slot];
+            case DOUBLE -> Double.longBitsToDouble(primitives[slot]);
+            case OBJECT -> objects[slot];
+            default -> null;
+        };
+    }
+
+    // Stores a value, numbers are unboxed into the primitive array.
+    void set(int slot, Object value) {
+        if (value instanceof Long || value instanceof Integer) {
+            setLong(slot, ((Number) value).longValue());
+        } else if (value instanceof Double) {
+            setDouble(slot, (Double) value);
+        } else {
+            kinds[slot] = OBJECT;
+            objects[slot] = value;
+        }
+    }
+
+    // Counts an executed statement, see CostCounter. The counting methods do nothing when cost is null.
+    void countStatement() {
+        if (cost != null) {
+            cost.statements++;
+        }
+    }
+
+    // Counts an evaluated expression or condition node.
+    void countExpression() {
+        if (cost != null) {
+            cost.expressions++;
+        }
+    }
+
+    // Counts a block that was entered.
+    void countScope() {
+        if (cost != null) {
+            cost.scopes++;
+        }
+    }
+
+    // Counts an object created for a value: a boxed number, a string or an array.
+    void countAllocation() {
+        if (cost != null) {
+            cost.allocations++;
+        }
+    }
+
+    // Counts an iteration of a loop.
+    void countIteration() {
+        if (cost != null) {
+            cost.iterations++;
+        }
+    }
+
+    // Stores a long without boxing.
+    void setLong(int slot, long value) {
+        kinds[slot] = LONG;
+        primitives[slot] = value;
+        objects[slot] = null; // Drops a previous reference, so it can be garbage collected.
+    }
+
+    // Stores a double without boxing.
+    void setDouble(int slot, double value) {
+        kinds[slot] = DOUBLE;
+        primitives[slot] = Double.doubleToRawLongBits(value);
+        objects[slot] = null;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// This class calls ExecutionListeners while compiled programs run.
+// A program without listeners runs its plain tree, which has no listener calls and no checks for them.
+// When it is attached to a program, every statement of every block is replaced by an InstrumentedNode
+// that calls the listeners around the original statement; detaching puts the original statements back.
+// The replacement works while the program runs: a block runs the new statements the next time it gets to them.
+// While instrumented, loops that are parallel reductions run in order, so the listeners see every step
+// in the order of the source.
+// The instrumentation is itself the listener the nodes call, it passes every event on to all added listeners.
+class Instrumentation implements ExecutionListener {
+    private volatile ExecutionListener[] listeners = new ExecutionListener[0]; // Replaced on every change.
+    private final Map<SwiftProgram, List<Replacement>> attached = new IdentityHashMap<>();
+
+    // Adds a listener, it gets the events of all attached programs.
+    synchronized void add(ExecutionListener listener) {
+        ExecutionListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    // Removes a listener, returns false if it was not added.
+    synchronized boolean remove(ExecutionListener listener) {
+        List<ExecutionListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        if (!remaining.remove(listener)) {
+            return false;
+        }
+        listeners = remaining.toArray(new ExecutionListener[0]);
+        return true;
+    }
+
+    // Returns true if no listener was added.
+    boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    // Replaces the statements of a program by instrumented statements.
+    synchronized void attach(SwiftProgram program) {
+        if (attached.containsKey(program)) {
+            return;
+        }
+        List<Replacement> replacements = new ArrayList<>();
+        instrument(program.body, replacements);
+        attached.put(program, replacements);
+    }
+
+    // Puts the original statements of a program back.
+    synchronized void detach(SwiftProgram program) {
+        List<Replacement> replacements = attached.remove(program);
+        if (replacements == null) {
+            return;
+        }
+        for (Replacement replacement : replacements) {
+            SwiftNodes.StatementNode current = replacement.statements[replacement.index];
+            if (current == replacement.instrumented) {
+                replacement.statements[replacement.index] = replacement.original;
+            } else if (current instanceof SwiftNodes.SampledStatementNode
+                    && ((SwiftNodes.SampledStatementNode) current).statement == replacement.instrumented) {
+                ((SwiftNodes.SampledStatementNode) current).statement = replacement.original; // Profiled too.
+            }
+        }
+    }
+
+    @Override
+    public void statementEntered(Token token) {
+        for (ExecutionListener listener : listeners) {
+            listener.statementEntered(token);
+        }
+    }
+
+    @Override
+    public void variableWritten(Token token, String name, Object value, boolean declaration) {
+        for (ExecutionListener listener : listeners) {
+            listener.variableWritten(token, name, value, declaration);
+        }
+    }
+
+    @Override
+    public void elementWritten(Token token, String array, long index, Object value) {
+        for (ExecutionListener listener : listeners) {
+            listener.elementWritten(token, array, index, value);
+        }
+    }
+
+    @Override
+    public void printed(Token token, Object value) {
+        for (ExecutionListener listener : listeners) {
+            listener.printed(token, value);
+        }
+    }
+
+    @Override
+    public void loopIteration(Token token, long iteration) {
+        for (ExecutionListener listener : listeners) {
+            listener.loopIteration(token, iteration);
+        }
+    }
+
+    @Override
+    public void blockSkipped(Token token, boolean elseBlock) {
+        for (ExecutionListener listener : listeners) {
+            listener.blockSkipped(token, elseBlock);
+        }
+    }
+
+    // Replaces every statement of the blocks below node by its instrumented version.
+    // A statement a ScriptProfiler wrapped stays wrapped, the instrumented statement goes inside the wrapper.
+    private void instrument(SwiftNodes.Node node, List<Replacement> replacements) {
+        if (node instanceof SwiftNodes.BlockNode) {
+            SwiftNodes.StatementNode[] statements = ((SwiftNodes.BlockNode) node).statements;
+            for (int i = 0; i < statements.length; i++) {
+                SwiftNodes.SampledStatementNode sampled = statements[i] instanceof SwiftNodes.SampledStatementNode
+                        ? (SwiftNodes.SampledStatementNode) statements[i] : null;
+                SwiftNodes.StatementNode statement = sampled != null ? sampled.statement : statements[i];
+                if (statement instanceof SwiftNodes.InstrumentedNode) {
+                    continue; // Block reached twice.
+                }
+                instrument(statement, replacements);
+                SwiftNodes.StatementNode instrumented = instrumented(statement);
+                if (sampled != null) {
+                    sampled.statement = instrumented;
+                } else {
+                    statements[i] = instrumented;
+                }
+                replacements.add(new Replacement(statements, i, statement, instrumented));
+            }
+            return;
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            instrument(child, replacements);
+        }
+    }
+
+    // Returns the instrumented version of a statement.
+    private SwiftNodes.StatementNode instrumented(SwiftNodes.StatementNode statement) {
+        if (statement instanceof SwiftNodes.ReductionNode) {
+            statement = ((SwiftNodes.ReductionNode) statement).loop; // Runs in order.
+        }
+        if (statement instanceof SwiftNodes.IfNode) {
+            return new SwiftNodes.InstrumentedIfNode((SwiftNodes.IfNode) statement, this);
+        }
+        if (statement instanceof SwiftNodes.WhileNode) {
+            return new SwiftNodes.InstrumentedWhileNode((SwiftNodes.WhileNode) statement, this);
+        }
+        if (statement instanceof SwiftNodes.ForRangeNode) {
+            return new SwiftNodes.InstrumentedForRangeNode((SwiftNodes.ForRangeNode) statement, this);
+        }
+        return new SwiftNodes.InstrumentedStatementNode(statement, this);
+    }
+
+    // A statement of a block that was replaced by its instrumented version.
+    private static final class Replacement {
+        final SwiftNodes.StatementNode[] statements;
+        final int index;
+        final SwiftNodes.StatementNode original;
+        final SwiftNodes.StatementNode instrumented;
+
+        Replacement(SwiftNodes.StatementNode[] statements, int index, SwiftNodes.StatementNode original,
+                    SwiftNodes.StatementNode instrumented) {
+            this.statements = statements;
+            this.index = index;
+            this.original = original;
+            this.instrumented = instrumented;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+// This class maps character offsets of a source code to line and column numbers.
+// It only stores the offset where every line starts, tokens and errors keep an offset and the
+// line and column are looked up by binary search when they are needed, which is only for errors.
+final class LineIndex {
+    private final int[] lineStarts; // Offset of the first character of every line, lineStarts[0] is 0.
+
+    private LineIndex(int[] lineStarts) {
+        this.lineStarts = lineStarts;
+    }
+
+    // Builds the index with two plain loops over the source: one counts the lines, one records their starts.
+    static LineIndex of(String source) {
+        int length = source.length();
+        int lineCount = 1;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(i) == '\n') {
+                lineCount++;
+            }
+        }
+        int[] lineStarts = new int[lineCount];
+        int line = 1;
+        for (int i = 0; i < length && line < lineCount; i++) {
+            if (source.charAt(i) == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+        return new LineIndex(lineStarts);
+    }
+
+    // Returns the line of an offset, starting at 1.
+    int line(int offset) {
+        int index = Arrays.binarySearch(lineStarts, offset);
+        return index >= 0 ? index + 1 : -index - 1; // Not found: the insertion point is the next line.
+    }
+
+    // Returns the column of an offset, starting at 1.
+    int column(int offset) {
+        return offset - lineStarts[line(offset) - 1] + 1;
+    }
+}
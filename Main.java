@@ -10,13 +10,11 @@
 */
 import java.util.List;
 import java.util.Scanner;
-import java.util.Map;
-import java.util.HashMap;
 
 public class Main {
 
-    // A global state map to store variables or data across executions.
-    private static Map<String, Object> globalState = new HashMap<>();
+    // The global variables, stored across executions. They can be shared with interpreters on other threads.
+    private static final SharedGlobals globalState = new SharedGlobals();
 
     // Main method:
     public static void main(String[] args) {
@@ -28,7 +26,7 @@ public class Main {
 
         StringBuilder codeBuilder = new StringBuilder(); // Accumulates multi-line code
         String line; // Stores the current line of input
-        SwiftInterpreter interpreter = new SwiftInterpreter(List.of()); // Initialize interpreter with empty tokens
+        SwiftInterpreter interpreter = new SwiftInterpreter(List.of(), globalState); // Initialize interpreter with empty tokens
 
         // This is a loop to handle the interactive prompt
         while (true) {
@@ -0,0 +1,322 @@
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// This class runs loops that are reductions over an integer range in parallel on the common fork/join pool.
+// A loop is a reduction when every iteration is independent of the others except for one accumulator:
+// the body only writes variables it declares itself (which start fresh in every iteration) and the
+// accumulator, the accumulator is only updated with acc = acc + e, acc = acc - e, acc += e, acc -= e
+// (or only with * and *=) where e does not read it, and the body does not print, change arrays or leave
+// the loop with break/continue. Supported loops are for i in a...b / a..<b and while loops of the form
+// while i < n (or <=) whose last statement is i = i + 1, i += 1 or i++ and where n is not changed.
+// Loops with fewer than THRESHOLD iterations run in order. A while loop fails after
+// SwiftNodes.MAX_ITERATIONS iterations, so only while loops with THRESHOLD (4096) to MAX_ITERATIONS (10000)
+// iterations run in parallel; for loops have no upper limit. In practice the parallel path is for for loops.
+// Every chunk of the range runs the body on its own copy of the frame, starting the accumulator at 0
+// (or 1), and the partial results are combined with the same operator. Integer + and * wrap around,
+// so they are associative and commutative and the result is bit-identical to running the loop in order.
+// Floating point accumulators are not associative; when the accumulator is not an integer, or an
+// iteration fails, the parallel result is dropped and the loop runs again in order, which gives the
+// same values, output and errors as before.
+// Nodes change their own specialization state while running. Those writes race between chunks, but
+// every state gives correct results for any value, so the race only costs speed.
+class ParallelReduction {
+    static final int THRESHOLD = 4096; // Loops with fewer iterations run in order.
+    private static final int MIN_CHUNK_SIZE = 512; // Chunks are not split below this many iterations.
+    static final boolean PARALLEL = Runtime.getRuntime().availableProcessors() > 1; // With one processor
+                                                                    // the chunks would only run one after another
+
+    private final SwiftNodes.StatementNode body; // Body of the loop.
+    private final int counterSlot; // Slot of the loop counter.
+    private final int accumulatorSlot; // Slot of the accumulator.
+    private final boolean multiply; // Whether the accumulator is a product instead of a sum.
+    private final SwiftNodes.ExpressionNode start; // First value of the counter, null for while loops.
+    private final SwiftNodes.ExpressionNode end; // Bound of the counter.
+    private final boolean inclusive; // Whether the bound itself is part of the range.
+
+    // Constructor.
+    private ParallelReduction(SwiftNodes.StatementNode body, int counterSlot, int accumulatorSlot, boolean multiply,
+                              SwiftNodes.ExpressionNode start, SwiftNodes.ExpressionNode end, boolean inclusive) {
+        this.body = body;
+        this.counterSlot = counterSlot;
+        this.accumulatorSlot = accumulatorSlot;
+        this.multiply = multiply;
+        this.start = start;
+        this.end = end;
+        this.inclusive = inclusive;
+    }
+
+    // Returns the reduction of a for loop, or null if the loop is not one.
+    static ParallelReduction of(SwiftNodes.ForRangeNode loop) {
+        Analysis analysis = new Analysis(loop.counterSlot, null);
+        analysis.locals.add(loop.counterSlot); // Set by the loop before every iteration.
+        if (!analysis.isReduction(loop.body)) {
+            return null;
+        }
+        return new ParallelReduction(loop.body, loop.counterSlot, analysis.accumulator, analysis.multiply,
+                loop.start, loop.end, loop.inclusive);
+    }
+
+    // Returns the reduction of a while loop, or null if the loop is not one.
+    static ParallelReduction of(SwiftNodes.WhileNode loop) {
+        if (!(loop.condition instanceof SwiftNodes.CompareNode)) {
+            return null;
+        }
+        SwiftNodes.CompareNode condition = (SwiftNodes.CompareNode) loop.condition;
+        if (!(condition.operator.equals("<") || condition.operator.equals("<="))
+                || !(condition.left instanceof SwiftNodes.ReadVariableNode)
+                || !(condition.right instanceof SwiftNodes.ReadVariableNode
+                || condition.right instanceof SwiftNodes.LongLiteralNode)) {
+            return null;
+        }
+        int counterSlot = ((SwiftNodes.ReadVariableNode) condition.left).slot;
+        SwiftNodes.StatementNode increment = lastStatement(loop.body);
+        if (!isIncrement(increment, counterSlot)) {
+            return null;
+        }
+        Analysis analysis = new Analysis(counterSlot, increment);
+        if (!analysis.isReduction(loop.body)) {
+            return null;
+        }
+        if (condition.right instanceof SwiftNodes.ReadVariableNode) {
+            int boundSlot = ((SwiftNodes.ReadVariableNode) condition.right).slot;
+            if (boundSlot == counterSlot || boundSlot == analysis.accumulator || analysis.locals.contains(boundSlot)) {
+                return null; // The bound changes while the loop runs.
+            }
+        }
+        return new ParallelReduction(loop.body, counterSlot, analysis.accumulator, analysis.multiply,
+                null, condition.right, condition.operator.equals("<="));
+    }
+
+    // Runs the loop in parallel and returns the number of iterations. Returns -1 without changing the frame
+    // when the loop is too short, the values are not integers or an iteration failed; the caller then runs
+    // the loop in order. Counted executions run in order too, so their counts do not depend on the host.
+    long execute(Frame frame) {
+        if (!PARALLEL || frame.cost != null || frame.kinds[accumulatorSlot] != Frame.LONG) {
+            return -1;
+        }
+        long first;
+        long last;
+        try {
+            if (start == null) { // while loop, the counter starts at its current value.
+                if (frame.kinds[counterSlot] != Frame.LONG) {
+                    return -1;
+                }
+                first = frame.primitives[counterSlot];
+            } else {
+                first = start.executeLong(frame);
+            }
+            last = end.executeLong(frame);
+        } catch (SwiftNodes.UnexpectedResultException e) {
+            return -1;
+        }
+        if (inclusive ? last < first : last <= first) {
+            return -1; // An empty range; checked before last-- so Long.MIN_VALUE does not wrap around.
+        }
+        if (!inclusive) {
+            last--;
+        }
+        long count = last - first + 1; // Negative when it overflows.
+        if (count < THRESHOLD || (start == null && count > SwiftNodes.MAX_ITERATIONS)) {
+            return -1; // A while loop that is too long has to fail after MAX_ITERATIONS iterations.
+        }
+        long result;
+        try {
+            result = ForkJoinPool.commonPool().invoke(new Chunk(frame, first, last, chunkSize(count)));
+        } catch (RuntimeException e) {
+            return -1; // Running in order reports the error of the first failing iteration.
+        }
+        long initial = frame.primitives[accumulatorSlot];
+        frame.setLong(accumulatorSlot, multiply ? initial * result : initial + result);
+        frame.setLong(counterSlot, start == null ? last + 1 : last); // Value after the loop ran in order.
+        return count;
+    }
+
+    // Splits the range into a few chunks per worker thread, so uneven iterations are balanced.
+    private static long chunkSize(long count) {
+        return Math.max(MIN_CHUNK_SIZE, count / (ForkJoinPool.getCommonPoolParallelism() * 8L));
+    }
+
+    // Fork/join task that reduces the iterations from first to last (both inclusive).
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private final class Chunk extends RecursiveTask<Long> {
+        private final Frame frame; // Frame of the loop, only read.
+        private final long first;
+        private final long last;
+        private final long chunkSize;
+
+        Chunk(Frame frame, long first, long last, long chunkSize) {
+            this.frame = frame;
+            this.first = first;
+            this.last = last;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Long compute() {
+            if (last - first < chunkSize) {
+                return reduce();
+            }
+            long middle = first + (last - first) / 2;
+            Chunk right = new Chunk(frame, middle + 1, last, chunkSize);
+            right.fork();
+            long left = new Chunk(frame, first, middle, chunkSize).compute();
+            long rightResult = right.join();
+            return multiply ? left * rightResult : left + rightResult;
+        }
+
+        // Runs the iterations of the chunk on a copy of the frame.
+        private long reduce() {
+            Frame copy = frame.copy();
+            copy.setLong(accumulatorSlot, multiply ? 1 : 0);
+            long counter = first;
+            while (true) { // Stops at last, so a chunk that ends at Long.MAX_VALUE does not wrap around.
+                copy.setLong(counterSlot, counter);
+                body.execute(copy); // The body has no break or continue for this loop.
+                if (counter++ == last) {
+                    break;
+                }
+            }
+            if (copy.kinds[accumulatorSlot] != Frame.LONG) {
+                throw SwiftNodes.error("Accumulator is not an integer", body.token);
+            }
+            return copy.primitives[accumulatorSlot];
+        }
+    }
+
+    // Returns the statement that runs last in a loop body, looking into blocks.
+    private static SwiftNodes.StatementNode lastStatement(SwiftNodes.StatementNode body) {
+        SwiftNodes.StatementNode statement = body;
+        while (statement instanceof SwiftNodes.BlockNode) {
+            SwiftNodes.Node[] children = statement.children();
+            if (children.length == 0) {
+                return null;
+            }
+            statement = (SwiftNodes.StatementNode) children[children.length - 1];
+        }
+        return statement;
+    }
+
+    // Checks if a statement is i = i + 1, i += 1 or i++.
+    private static boolean isIncrement(SwiftNodes.StatementNode statement, int slot) {
+        SwiftNodes.ExpressionNode step;
+        if (statement instanceof SwiftNodes.WriteVariableNode) {
+            SwiftNodes.WriteVariableNode write = (SwiftNodes.WriteVariableNode) statement;
+            if (write.slot != slot || write.declaration || !(write.value instanceof SwiftNodes.BinaryNode)) {
+                return false;
+            }
+            SwiftNodes.BinaryNode binary = (SwiftNodes.BinaryNode) write.value;
+            if (binary.operator != '+' || !(binary.left instanceof SwiftNodes.ReadVariableNode)
+                    || ((SwiftNodes.ReadVariableNode) binary.left).slot != slot) {
+                return false;
+            }
+            step = binary.right;
+        } else if (statement instanceof SwiftNodes.CompoundAssignNode) {
+            SwiftNodes.CompoundAssignNode update = (SwiftNodes.CompoundAssignNode) statement;
+            if (update.slot != slot || update.operator != '+') {
+                return false;
+            }
+            step = update.value;
+        } else {
+            return false;
+        }
+        return step instanceof SwiftNodes.LongLiteralNode && ((SwiftNodes.LongLiteralNode) step).value == 1;
+    }
+
+    // Walks a loop body and checks the conditions of a reduction.
+    private static final class Analysis {
+        final int counterSlot; // Slot of the loop counter.
+        final SwiftNodes.StatementNode increment; // Counter increment of a while loop, null for for loops.
+        final Set<Integer> locals = new HashSet<>(); // Slots declared inside the body.
+        final Set<Integer> reads = new HashSet<>(); // Slots read outside of accumulator updates.
+        int accumulator = -1; // Slot of the accumulator, -1 until the first update is found.
+        boolean multiply; // Whether the updates use * instead of + and -.
+        boolean valid = true;
+
+        Analysis(int counterSlot, SwiftNodes.StatementNode increment) {
+            this.counterSlot = counterSlot;
+            this.increment = increment;
+        }
+
+        // Checks the whole body.
+        boolean isReduction(SwiftNodes.StatementNode body) {
+            declarations(body);
+            visit(body, 0);
+            return valid && accumulator >= 0 && !reads.contains(accumulator);
+        }
+
+        // Collects the slots of variables declared inside the body, including counters of inner loops.
+        private void declarations(SwiftNodes.Node node) {
+            if (node instanceof SwiftNodes.WriteVariableNode && ((SwiftNodes.WriteVariableNode) node).declaration) {
+                locals.add(((SwiftNodes.WriteVariableNode) node).slot);
+            } else if (node instanceof SwiftNodes.ForRangeNode) {
+                locals.add(((SwiftNodes.ForRangeNode) node).counterSlot);
+            }
+            for (SwiftNodes.Node child : node.children()) {
+                declarations(child);
+            }
+        }
+
+        // Checks a node, depth is the number of inner loops around it.
+        private void visit(SwiftNodes.Node node, int depth) {
+            if (!valid || node == increment) {
+                return;
+            }
+            if (node instanceof SwiftNodes.WriteVariableNode) {
+                SwiftNodes.WriteVariableNode write = (SwiftNodes.WriteVariableNode) node;
+                if (locals.contains(write.slot)) {
+                    visit(write.value, depth);
+                } else if (write.value instanceof SwiftNodes.BinaryNode
+                        && ((SwiftNodes.BinaryNode) write.value).left instanceof SwiftNodes.ReadVariableNode
+                        && ((SwiftNodes.ReadVariableNode) ((SwiftNodes.BinaryNode) write.value).left).slot == write.slot
+                        && update(write.slot, ((SwiftNodes.BinaryNode) write.value).operator)) {
+                    visit(((SwiftNodes.BinaryNode) write.value).right, depth); // acc = acc op e
+                } else {
+                    valid = false;
+                }
+            } else if (node instanceof SwiftNodes.CompoundAssignNode) {
+                SwiftNodes.CompoundAssignNode update = (SwiftNodes.CompoundAssignNode) node;
+                if (locals.contains(update.slot) || update(update.slot, update.operator)) {
+                    visit(update.value, depth);
+                } else {
+                    valid = false;
+                }
+            } else if (node instanceof SwiftNodes.ReadVariableNode) {
+                reads.add(((SwiftNodes.ReadVariableNode) node).slot);
+            } else if (node instanceof SwiftNodes.JumpNode) {
+                valid = depth > 0; // break/continue of an inner loop.
+            } else if (node instanceof SwiftNodes.WhileNode || node instanceof SwiftNodes.ForRangeNode) {
+                for (SwiftNodes.Node child : node.children()) {
+                    visit(child, depth + 1);
+                }
+            } else if (node instanceof SwiftNodes.LongLiteralNode || node instanceof SwiftNodes.DoubleLiteralNode
+                    || node instanceof SwiftNodes.StringLiteralNode || node instanceof SwiftNodes.BinaryNode
+                    || node instanceof SwiftNodes.NegateNode || node instanceof SwiftNodes.ArrayLiteralNode
+                    || node instanceof SwiftNodes.RepeatingArrayNode || node instanceof SwiftNodes.IndexNode
+                    || node instanceof SwiftNodes.CountNode || node instanceof SwiftNodes.CompareNode
+                    || node instanceof SwiftNodes.AndNode || node instanceof SwiftNodes.OrNode
+                    || node instanceof SwiftNodes.NotNode || node instanceof SwiftNodes.BlockNode
+                    || node instanceof SwiftNodes.IfNode || node instanceof SwiftNodes.ReductionNode) {
+                for (SwiftNodes.Node child : node.children()) {
+                    visit(child, depth);
+                }
+            } else {
+                valid = false; // print, array changes and unknown nodes.
+            }
+        }
+
+        // Records an update of a variable that is not declared in the body, it has to be the accumulator.
+        private boolean update(int slot, char operator) {
+            if (slot == counterSlot || (operator != '+' && operator != '-' && operator != '*')) {
+                return false;
+            }
+            if (accumulator < 0) {
+                accumulator = slot;
+                multiply = operator == '*';
+                return true;
+            }
+            return accumulator == slot && multiply == (operator == '*');
+        }
+    }
+}
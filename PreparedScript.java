@@ -0,0 +1,126 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// This class is a script that is tokenized and compiled once and then executed many times.
+// Input parameters are variables the script uses without declaring them, every execution binds
+// them to new values. An execution only creates a frame and runs the tree: there is no lexing,
+// no parsing and no scope map. The debug lines of SwiftInterpreter are not printed.
+// The compiled tree is shared by all executions, so one prepared script can be executed from several threads.
+class PreparedScript {
+    private final SwiftProgram program; // Compiled tree of the script.
+    private final String[] parameters; // Names of the input parameters, in the order of positional arguments.
+    private final int[] parameterSlots; // Frame slot of every parameter.
+
+    // Constructor: use prepare() to create prepared scripts.
+    private PreparedScript(SwiftProgram program, String[] parameters) {
+        this.program = program;
+        this.parameters = parameters;
+        this.parameterSlots = new int[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameterSlots[i] = program.globalSlots.get(parameters[i]);
+        }
+    }
+
+    // Tokenizes and compiles a script with the given input parameters.
+    // The script must not declare the parameters itself.
+    static PreparedScript prepare(String sourceCode, String... parameters) {
+        List<Token> tokens = new Tokenizer(sourceCode).tokenize();
+        return new PreparedScript(new SwiftCompiler(tokens, Arrays.asList(parameters)).compile(),
+                parameters.clone());
+    }
+
+    // Returns the compiled tree, used by analyses of the script.
+    SwiftProgram program() {
+        return program;
+    }
+
+    // Returns the names of the input parameters.
+    String[] parameters() {
+        return parameters.clone();
+    }
+
+    // Executes the script with integer arguments, given in the order of the parameters. Arguments are not boxed.
+    ScriptResult execute(long... arguments) {
+        if (arguments.length != parameterSlots.length) {
+            throw new IllegalArgumentException("Expected " + parameterSlots.length + " arguments but got "
+                    + arguments.length);
+        }
+        Frame frame = new Frame(program.slotCount);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.setLong(parameterSlots[i], arguments[i]);
+        }
+        return run(frame);
+    }
+
+    // Executes the script with floating point arguments, given in the order of the parameters.
+    ScriptResult execute(double... arguments) {
+        if (arguments.length != parameterSlots.length) {
+            throw new IllegalArgumentException("Expected " + parameterSlots.length + " arguments but got "
+                    + arguments.length);
+        }
+        Frame frame = new Frame(program.slotCount);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.setDouble(parameterSlots[i], arguments[i]);
+        }
+        return run(frame);
+    }
+
+    // Executes the script with arguments given by parameter name. Parameters that are not bound stay undefined.
+    ScriptResult execute(Map<String, ?> bindings) {
+        return execute(bindings, System.out);
+    }
+
+    // Executes the script with arguments given by parameter name, print writes to the given stream.
+    ScriptResult execute(Map<String, ?> bindings, PrintStream out) {
+        Frame frame = new Frame(program.slotCount, out);
+        for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+            int index = Arrays.asList(parameters).indexOf(binding.getKey());
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown parameter: " + binding.getKey());
+            }
+            frame.set(parameterSlots[index], binding.getValue());
+        }
+        return run(frame);
+    }
+
+    // Executes the script once for every integer input and returns the values of the output variable.
+    // The script needs exactly one parameter. Inputs are processed in parallel on the common fork/join pool.
+    long[] executeBatch(long[] inputs, String output) {
+        return batch(output).run(inputs);
+    }
+
+    // Executes the script once for every floating point input and returns the values of the output variable.
+    double[] executeBatch(double[] inputs, String output) {
+        return batch(output).run(inputs);
+    }
+
+    // Creates the batch executor for the output variable.
+    private ScriptBatch batch(String output) {
+        if (parameterSlots.length != 1) {
+            throw new IllegalArgumentException("Batch execution needs exactly one parameter, the script has "
+                    + parameterSlots.length);
+        }
+        Integer outputSlot = program.globalSlots.get(output);
+        if (outputSlot == null) {
+            throw new IllegalArgumentException("Unknown output variable: " + output);
+        }
+        return new ScriptBatch(program, parameterSlots[0], outputSlot);
+    }
+
+    // Runs the tree on a frame whose parameters are bound.
+    // Every run is recorded by JFR as an execution, see ScriptEvents.
+    private ScriptResult run(Frame frame) {
+        ScriptEvents.Execution event = new ScriptEvents.Execution();
+        event.begin();
+        String outcome = "runtime error";
+        try {
+            program.body.execute(frame);
+            outcome = "completed";
+        } finally {
+            ScriptEvents.executionEnded(event, program, outcome);
+        }
+        return new ScriptResult(frame, program.globalSlots);
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Regressions runs scripts whose output was wrong in an earlier version and compares it with the correct output.
+// Errors count as output, so a script that must fail is checked too. It exits with status 1 if a script differs.
+// Parallel reductions are only checked with more than one processor; on a host with one, run it with
+// -XX:ActiveProcessorCount=2 or more.
+public class Regressions {
+    private static int failures;
+
+    public static void main(String[] args) {
+        // Integer elements of mixed arrays used where an integer is needed
+        check("mixed array index", """
+                var a = [1, "x"]
+                var b = [10, 20, 30]
+                print(b[a[0]])""", "20\n");
+        check("mixed array range bound", """
+                var a = [1, "x"]
+                for i in 0...a[0] {
+                    print(i)
+                }""", "0\n1\n");
+        check("mixed array negation", """
+                var a = [1, "x"]
+                var b = [10, 20, 30]
+                print(-a[0])
+                print(b[-a[0] + 2])""", "-1\n20\n");
+        check("mixed array string index", """
+                var a = [1, "x"]
+                var b = [10, 20, 30]
+                print(b[a[1]])""", "Error at line 3, column 8: Array index must be an integer: x\n");
+
+        // Ranges that end at the largest and the smallest integer
+        check("range up to the largest integer", """
+                for i in 9223372036854775806...9223372036854775807 {
+                    print(i)
+                }""", "9223372036854775806\n9223372036854775807\n");
+        check("half-open range below the smallest integer", """
+                var smallest = -9223372036854775807 - 1
+                for i in 0..<smallest {
+                    print(i)
+                }
+                print("done")""", "done\n");
+        check("reduction over the largest integers", """
+                var sum = 0
+                for i in 9223372036854775807 - 9999...9223372036854775807 {
+                    sum += 1
+                }
+                print(sum)""", "10000\n");
+
+        // Token lists that are not one tokenized source
+        List<Token> unknownOperator = new ArrayList<>(new Tokenizer("print(1 + 2)").tokenize());
+        Token plus = unknownOperator.get(3);
+        unknownOperator.set(3, new Token("OPERATOR", "??", plus.offset, plus.lines));
+        checkTokens("unknown operator token", unknownOperator, "Error at line 1, column 9: Unknown operator: ??\n");
+        List<Token> twoSources = new ArrayList<>(new Tokenizer("print(1)").tokenize());
+        twoSources.remove(twoSources.size() - 1); // The EOF of the first source.
+        twoSources.addAll(new Tokenizer("\n\nprint(2)\nprint(x)").tokenize());
+        checkTokens("tokens of two sources", twoSources, "1\n2\nError at line 4, column 7: Undefined variable: x\n");
+
+        // Element writes reported to a listener
+        String elements = """
+                var a = [1, 2, 3]
+                a[1] = 5
+                a.append(7)""";
+        checkTraced("traced element writes", elements,
+                "Declared variable: a = [1, 2, 3]\nUpdated element: a[1] = 5\nUpdated element: a[3] = 7\n");
+        compare("counts with a listener", counts(elements, true), counts(elements, false));
+
+        // Reductions that run in parallel give the same values as in order, also when they wrap around
+        checkParallel("parallel sum", """
+                var sum = 0
+                for i in 1...20000 {
+                    var square = i * i
+                    sum += square * square * i
+                }""");
+        checkParallel("parallel product", """
+                var product = 1
+                for i in 0..<10000 {
+                    product *= 2 * i + 1
+                }""");
+        checkParallel("parallel while sum", """
+                var sum = 0
+                var i = 0
+                var n = 5000
+                while i < n {
+                    sum = sum + i
+                    i = i + 1
+                }""");
+
+        // Errors with a given position of line 0
+        compare("diagnostic at line 0", new Diagnostic("x", 0, 0).render(), "Error at line 0, column 0: x");
+        compare("tokenizer exception at line 0", new TokenizerException("x", 0, 3).getMessage(),
+                "Error at line 0, column 3: x");
+
+        // String inputs of the result cache that look like other inputs
+        ResultCache cache = new ResultCache(1 << 20);
+        checkCached("cache key with separators", cache, "print(s)", Map.of("s", "x|t=l:1"), "x|t=l:1\n");
+        checkCached("cache key without separators", cache, "print(s)", Map.of("s", "x", "t", 1L), "x\n");
+
+        // Cached scripts that import a library which is defined again with a new source
+        ScriptLibrary.define("regressionConstants", "var answer = 41");
+        checkCached("cache with library", cache, "import regressionConstants\nprint(answer + n)", Map.of("n", 1L),
+                "42\n");
+        ScriptLibrary.define("regressionConstants", "var answer = 99");
+        checkCached("cache with redefined library", cache, "import regressionConstants\nprint(answer + n)",
+                Map.of("n", 1L), "100\n");
+
+        System.out.println(failures == 0 ? "All regression scripts passed." : failures + " regression scripts failed.");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // check runs a script and compares its output and errors with the expected text
+    private static void check(String name, String sourceCode, String expected) {
+        checkTokens(name, new Tokenizer(sourceCode).tokenize(), expected);
+    }
+
+    // checkTokens runs a list of tokens and compares its output and errors with the expected text
+    private static void checkTokens(String name, List<Token> tokens, String expected) {
+        compare(name, run(tokens, false, null, null), expected);
+    }
+
+    // checkTraced runs a script with the debug lines and compares its output and errors with the expected text
+    private static void checkTraced(String name, String sourceCode, String expected) {
+        compare(name, run(new Tokenizer(sourceCode).tokenize(), true, null, null), expected);
+    }
+
+    // counts runs a script, with or without a listener that does nothing, and returns its cost counts
+    private static String counts(String sourceCode, boolean listener) {
+        CostCounter counter = new CostCounter();
+        run(new Tokenizer(sourceCode).tokenize(), false, counter, listener ? new ExecutionListener() {
+        } : null);
+        return counter.toString();
+    }
+
+    // run executes a list of tokens with the given debug lines, cost counter and listener (both can be null)
+    // and returns what it printed
+    private static String run(List<Token> tokens, boolean trace, CostCounter counter, ExecutionListener listener) {
+        SwiftInterpreter interpreter = new SwiftInterpreter(tokens);
+        interpreter.setTrace(trace);
+        interpreter.setCostCounter(counter);
+        if (listener != null) {
+            interpreter.addListener(listener);
+        }
+        return capture(interpreter::execute);
+    }
+
+    // checkParallel runs the last statement of a script, a reduction loop, once in parallel and once in order and
+    // compares the globals afterwards; it fails if the loop does not run in parallel
+    private static void checkParallel(String name, String sourceCode) {
+        if (!ParallelReduction.PARALLEL) {
+            System.out.println("SKIP  " + name + ": one processor");
+            return;
+        }
+        SwiftProgram program = new SwiftCompiler(new Tokenizer(sourceCode).tokenize(), List.of()).compile();
+        SwiftNodes.StatementNode[] statements = ((SwiftNodes.BlockNode) program.body).statements;
+        if (!(statements[statements.length - 1] instanceof SwiftNodes.ReductionNode)) {
+            compare(name, "no reduction", "reduction");
+            return;
+        }
+        SwiftNodes.ReductionNode loop = (SwiftNodes.ReductionNode) statements[statements.length - 1];
+        Frame parallel = new Frame(program.slotCount);
+        Frame inOrder = new Frame(program.slotCount);
+        for (int i = 0; i < statements.length - 1; i++) {
+            statements[i].execute(parallel);
+            statements[i].execute(inOrder);
+        }
+        if (loop.reduction.execute(parallel) < 0) {
+            compare(name, "in order", "in parallel");
+            return;
+        }
+        loop.loop.execute(inOrder);
+        compare(name, globals(program, parallel), globals(program, inOrder));
+    }
+
+    // globals returns the values of the globals of a program in a frame as text
+    private static String globals(SwiftProgram program, Frame frame) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> global : program.globalSlots.entrySet()) {
+            text.append(global.getKey()).append(" = ").append(frame.get(global.getValue())).append('\n');
+        }
+        return text.toString();
+    }
+
+    // checkCached executes a script with inputs through a result cache and compares its output with the expected text
+    private static void checkCached(String name, ResultCache cache, String sourceCode, Map<String, ?> inputs,
+                                    String expected) {
+        compare(name, capture(() -> cache.execute(sourceCode, inputs)), expected);
+    }
+
+    // compare reports a failure if the output is not the expected text
+    private static void compare(String name, String output, String expected) {
+        if (!output.equals(expected)) {
+            System.out.printf("FAIL  %s%n  expected: %s%n  actual:   %s%n", name, expected.replace("\n", "\\n"),
+                    output.replace("\n", "\\n"));
+            failures++;
+        }
+    }
+
+    // capture runs code and returns what it printed to System.out and System.err
+    private static String capture(Runnable code) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream capture = new PrintStream(output, true, StandardCharsets.UTF_8);
+        System.setOut(capture);
+        System.setErr(capture);
+        try {
+            code.run();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// This class is an opt-in cache of whole script executions.
+// A deterministic script's printed output and final globals only depend on its source, its inputs and the
+// libraries it imports, so the cache keys on a hash of the source plus the inputs and the source hashes of
+// the libraries, and replays a stored result instead of
+// executing the script again. Scripts that are not deterministic are always executed.
+// Memory is bounded: entries are evicted in least recently used order until the estimated size of
+// all entries fits into the limit.
+// Scripts are compiled once and kept with their hashes and analysis, so a hit only builds the key of the inputs.
+// Compiling happens outside the cache's lock, so a large new script does not hold back other scripts.
+class ResultCache {
+    private static final int MAX_PREPARED_SCRIPTS = 64; // Compiled scripts kept for misses.
+
+    private final long maxBytes; // Limit of the estimated size of all entries.
+    private long usedBytes; // Estimated size of all entries.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // In access order.
+    // Compiled scripts by source and parameters, in access order.
+    private final LinkedHashMap<List<String>, Prepared> prepared = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, Prepared> eldest) {
+            return size() > MAX_PREPARED_SCRIPTS;
+        }
+    };
+    private long hits; // Executions answered from the cache.
+    private long misses; // Deterministic executions that had to run.
+    private long uncacheable; // Executions of scripts that are not deterministic or have inputs that can not be keyed.
+    private long evictions; // Entries removed to stay below the limit.
+
+    // Constructor: maxBytes limits the estimated memory used by cached results.
+    ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Executes a script with the given inputs, or replays the stored result of an identical earlier execution.
+    // The inputs are the script's parameters. Printed output is written to System.out in both cases.
+    ScriptResult execute(String sourceCode, Map<String, ?> inputs) {
+        Map<String, Object> sortedInputs = new TreeMap<>(inputs);
+        Prepared prepared = prepare(sourceCode, sortedInputs.keySet().toArray(new String[0]));
+        PreparedScript script = prepared.script;
+        String key = key(prepared.hashes, sortedInputs);
+        if (key == null || !prepared.deterministic) {
+            synchronized (this) {
+                uncacheable++;
+            }
+            return script.execute(inputs);
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (entry != null) {
+            System.out.print(entry.output);
+            return entry.result(script.program());
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ScriptResult result;
+        try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+            try {
+                result = script.execute(inputs, out);
+            } finally {
+                System.out.print(output.toString(StandardCharsets.UTF_8)); // Also the output before an error.
+            }
+        }
+        store(key, new Entry(output.toString(StandardCharsets.UTF_8), result.globals()));
+        return result;
+    }
+
+    // Returns the share of cacheable executions that were answered from the cache.
+    synchronized double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long uncacheable() {
+        return uncacheable;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    // Returns the estimated memory used by cached results.
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    // Returns the statistics as one line.
+    @Override
+    public synchronized String toString() {
+        return String.format("ResultCache{entries=%d, bytes=%d/%d, hits=%d, misses=%d, uncacheable=%d, "
+                        + "evictions=%d, hitRate=%.3f}", entries.size(), usedBytes, maxBytes, hits, misses,
+                uncacheable, evictions, hitRate());
+    }
+
+    // Returns the prepared script of a source, compiling it on first use and again when a library it imports
+    // was defined with a new source since. When two threads compile the same script, the first one is kept.
+    private Prepared prepare(String sourceCode, String[] parameters) {
+        List<String> key = List.of(sourceCode, String.join(",", parameters));
+        Prepared script;
+        synchronized (this) {
+            script = prepared.get(key);
+        }
+        if (script != null && script.importsCurrentLibraries()) {
+            return script;
+        }
+        Prepared compiled = new Prepared(sourceCode, PreparedScript.prepare(sourceCode, parameters));
+        synchronized (this) {
+            Prepared current = prepared.get(key);
+            if (current != null && current != script && current.importsCurrentLibraries()) {
+                return current;
+            }
+            prepared.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    // Adds an entry and evicts the least recently used entries until everything fits.
+    private synchronized void store(String key, Entry entry) {
+        if (entry.bytes + key.length() * 2L > maxBytes) {
+            return; // Larger than the whole cache.
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            usedBytes -= previous.bytes + key.length() * 2L;
+        }
+        usedBytes += entry.bytes + key.length() * 2L;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            usedBytes -= evicted.getValue().bytes + evicted.getKey().length() * 2L;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Builds the cache key from the hashes of a script and the inputs, or returns null if an input can not be keyed.
+    // Names and values are prefixed with their length, so no string input can look like other inputs.
+    private static String key(String hashes, Map<String, Object> sortedInputs) {
+        StringBuilder key = new StringBuilder(hashes);
+        for (Map.Entry<String, Object> input : sortedInputs.entrySet()) {
+            Object value = input.getValue();
+            if (!(value instanceof Long || value instanceof Integer || value instanceof Double
+                    || value instanceof CharSequence)) {
+                return null; // Arrays are mutable, the script could change them.
+            }
+            String type = value instanceof Double ? "d" : value instanceof CharSequence ? "s" : "l";
+            String text = value.toString();
+            key.append('|').append(input.getKey().length()).append(':').append(input.getKey())
+                    .append('=').append(type).append(text.length()).append(':').append(text);
+        }
+        return key.toString();
+    }
+
+    // Collects the libraries a tree imports.
+    private static void imports(SwiftNodes.Node node, List<ScriptLibrary.Library> libraries) {
+        if (node instanceof SwiftNodes.ImportNode) {
+            libraries.add(((SwiftNodes.ImportNode) node).library);
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            imports(child, libraries);
+        }
+    }
+
+    // Checks if a tree is deterministic: it reads no external input, and every loop ends
+    // (while loops after at most SwiftNodes.MAX_ITERATIONS iterations, for loops at the end of their range,
+    // which is not limited, so a deterministic script can still run for a long time).
+    // Only node types known to be deterministic are accepted, so new kinds of nodes are excluded until added here.
+    static boolean isDeterministic(SwiftNodes.Node node) {
+        if (!(node instanceof SwiftNodes.LongLiteralNode || node instanceof SwiftNodes.DoubleLiteralNode
+                || node instanceof SwiftNodes.StringLiteralNode || node instanceof SwiftNodes.ReadVariableNode
+                || node instanceof SwiftNodes.UndefinedVariableNode || node instanceof SwiftNodes.BinaryNode
+                || node instanceof SwiftNodes.NegateNode || node instanceof SwiftNodes.ArrayLiteralNode
+                || node instanceof SwiftNodes.RepeatingArrayNode || node instanceof SwiftNodes.IndexNode
+                || node instanceof SwiftNodes.CountNode || node instanceof SwiftNodes.CompareNode
+                || node instanceof SwiftNodes.AndNode || node instanceof SwiftNodes.OrNode
+                || node instanceof SwiftNodes.NotNode
+                || node instanceof SwiftNodes.BlockNode || node instanceof SwiftNodes.WriteVariableNode
+                || node instanceof SwiftNodes.CompoundAssignNode
+                || node instanceof SwiftNodes.UndefinedAssignmentNode || node instanceof SwiftNodes.WriteElementNode
+                || node instanceof SwiftNodes.AppendNode || node instanceof SwiftNodes.PrintNode
+                || node instanceof SwiftNodes.IfNode || node instanceof SwiftNodes.WhileNode
+                || node instanceof SwiftNodes.ForRangeNode || node instanceof SwiftNodes.JumpNode
+                || node instanceof SwiftNodes.ReductionNode || node instanceof SwiftNodes.SampledStatementNode
+                || node instanceof SwiftNodes.ImportNode)) {
+            return false;
+        }
+        if (node instanceof SwiftNodes.ImportNode && !((SwiftNodes.ImportNode) node).library.isDeterministic()) {
+            return false;
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            if (!isDeterministic(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the SHA-256 hash of a source as a hex string.
+    static String sha256(String sourceCode) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sourceCode.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Compiled script with what every execution needs from its source and tree.
+    private static final class Prepared {
+        final PreparedScript script;
+        final ScriptLibrary.Library[] libraries; // Libraries the script imports, in the versions it was compiled with.
+        // Hash of the source and the names and source hashes of the libraries, the start of every cache key,
+        // so results computed with an earlier version of a library are not replayed.
+        final String hashes;
+        final boolean deterministic;
+
+        Prepared(String sourceCode, PreparedScript script) {
+            this.script = script;
+            List<ScriptLibrary.Library> libraries = new ArrayList<>();
+            imports(script.program().body, libraries);
+            this.libraries = libraries.toArray(new ScriptLibrary.Library[0]);
+            StringBuilder hashes = new StringBuilder(sha256(sourceCode));
+            for (ScriptLibrary.Library library : this.libraries) {
+                hashes.append('|').append(library.name()).append('@').append(library.sourceHash());
+            }
+            this.hashes = hashes.toString();
+            this.deterministic = isDeterministic(script.program().body);
+        }
+
+        // Checks if every library the script imports is still the current version of the library.
+        boolean importsCurrentLibraries() {
+            for (ScriptLibrary.Library library : libraries) {
+                if (ScriptLibrary.get(library.name()) != library) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Stored result of one execution: printed output and final globals.
+    private static final class Entry {
+        final String output;
+        final Map<String, Object> globals;
+        final long bytes; // Estimated memory used by the entry.
+
+        Entry(String output, Map<String, Object> globals) {
+            this.output = output;
+            this.globals = new LinkedHashMap<>();
+            long bytes = 64 + output.length() * 2L;
+            for (Map.Entry<String, Object> global : globals.entrySet()) {
+                Object value = global.getValue();
+                if (value instanceof SwiftArray) {
+                    // Arrays are mutable, a caller could change the cached copy, so they are copied.
+                    SwiftArray array = (SwiftArray) value;
+                    value = array.copy();
+                    bytes += 16L + array.size() * 8L;
+                } else if (value instanceof CharSequence) {
+                    value = value.toString();
+                    bytes += 48L + ((String) value).length() * 2L;
+                } else {
+                    bytes += 24;
+                }
+                this.globals.put(global.getKey(), value);
+                bytes += 48 + global.getKey().length() * 2L;
+            }
+            this.bytes = bytes;
+        }
+
+        // Creates a result with the stored globals, arrays are copied so the cached values stay unchanged.
+        ScriptResult result(SwiftProgram program) {
+            Frame frame = new Frame(program.slotCount);
+            for (Map.Entry<String, Object> global : globals.entrySet()) {
+                Object value = global.getValue();
+                frame.set(program.globalSlots.get(global.getKey()),
+                        value instanceof SwiftArray ? ((SwiftArray) value).copy() : value);
+            }
+            return new ScriptResult(frame, program.globalSlots);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// This class executes a prepared script with one input parameter over a whole column of inputs.
+// The column is split into chunks that run in parallel on the common fork/join pool.
+// A script that is straight-line arithmetic (only declarations, assignments and compound assignments
+// of +, -, *, /, % and unary minus) is evaluated column-wise: every operator runs as one loop over a chunk, which the
+// JIT compiler can vectorize. Other scripts run row by row, reusing one frame per chunk.
+class ScriptBatch {
+    private static final int CHUNK_SIZE = 4096; // Inputs per fork/join task.
+
+    private final SwiftProgram program; // Compiled tree of the script.
+    private final int parameterSlot; // Slot of the input parameter.
+    private final int outputSlot; // Slot of the variable that is collected into the output column.
+
+    // Constructor.
+    ScriptBatch(SwiftProgram program, int parameterSlot, int outputSlot) {
+        this.program = program;
+        this.parameterSlot = parameterSlot;
+        this.outputSlot = outputSlot;
+    }
+
+    // Runs the script for every integer input, the output variable has to be an integer.
+    long[] run(long[] inputs) {
+        long[] outputs = new long[inputs.length];
+        boolean columnWise = isStraightLine();
+        ForkJoinPool.commonPool().invoke(new Chunk(0, inputs.length, (from, to) -> {
+            if (columnWise) {
+                Column[] columns = new Column[program.slotCount];
+                columns[parameterSlot] = Column.of(inputs, from, to);
+                evaluateColumns(columns, to - from);
+                columns[outputSlot].copyLongs(outputs, from, program.body.token);
+                return;
+            }
+            Frame frame = new Frame(program.slotCount);
+            for (int i = from; i < to; i++) {
+                frame.setLong(parameterSlot, inputs[i]);
+                program.body.execute(frame);
+                if (frame.kinds[outputSlot] != Frame.LONG) {
+                    throw SwiftNodes.error("Output variable is not an integer: %s", program.body.token,
+                            frame.get(outputSlot));
+                }
+                outputs[i] = frame.primitives[outputSlot];
+            }
+        }));
+        return outputs;
+    }
+
+    // Runs the script for every floating point input, integer outputs are converted to doubles.
+    double[] run(double[] inputs) {
+        double[] outputs = new double[inputs.length];
+        boolean columnWise = isStraightLine();
+        ForkJoinPool.commonPool().invoke(new Chunk(0, inputs.length, (from, to) -> {
+            if (columnWise) {
+                Column[] columns = new Column[program.slotCount];
+                columns[parameterSlot] = Column.of(inputs, from, to);
+                evaluateColumns(columns, to - from);
+                columns[outputSlot].copyDoubles(outputs, from);
+                return;
+            }
+            Frame frame = new Frame(program.slotCount);
+            for (int i = from; i < to; i++) {
+                frame.setDouble(parameterSlot, inputs[i]);
+                program.body.execute(frame);
+                Object output = frame.get(outputSlot);
+                if (!(output instanceof Number)) {
+                    throw SwiftNodes.error("Output variable is not a number: %s", program.body.token, output);
+                }
+                outputs[i] = ((Number) output).doubleValue();
+            }
+        }));
+        return outputs;
+    }
+
+    // Work on the inputs from (inclusive) to (exclusive).
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    // Fork/join task that splits its range in halves until it is small enough.
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private static final class Chunk extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final RangeTask task;
+
+        Chunk(int from, int to, RangeTask task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                task.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(from, middle, task), new Chunk(middle, to, task));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Column-wise evaluation
+    // ---------------------------------------------------------------------------------------------
+
+    // Checks if the script only writes variables with arithmetic over the parameter, literals and
+    // variables written before, so that evaluating it column by column gives the same values as row by row.
+    private boolean isStraightLine() {
+        Set<Integer> defined = new HashSet<>();
+        defined.add(parameterSlot);
+        for (SwiftNodes.Node statement : program.body.children()) {
+            if (statement instanceof SwiftNodes.CompoundAssignNode) {
+                SwiftNodes.CompoundAssignNode update = (SwiftNodes.CompoundAssignNode) statement;
+                if (!defined.contains(update.slot) || !isArithmetic(update.value, defined)) {
+                    return false;
+                }
+                continue;
+            }
+            if (!(statement instanceof SwiftNodes.WriteVariableNode)) {
+                return false;
+            }
+            SwiftNodes.WriteVariableNode write = (SwiftNodes.WriteVariableNode) statement;
+            if (!isArithmetic(write.value, defined)) {
+                return false;
+            }
+            defined.add(write.slot);
+        }
+        return defined.contains(outputSlot);
+    }
+
+    // Checks if an expression only uses arithmetic operators, number literals and defined variables.
+    private static boolean isArithmetic(SwiftNodes.Node node, Set<Integer> defined) {
+        if (node instanceof SwiftNodes.ReadVariableNode) {
+            return defined.contains(((SwiftNodes.ReadVariableNode) node).slot);
+        }
+        if (!(node instanceof SwiftNodes.BinaryNode || node instanceof SwiftNodes.NegateNode
+                || node instanceof SwiftNodes.LongLiteralNode || node instanceof SwiftNodes.DoubleLiteralNode)) {
+            return false;
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            if (!isArithmetic(child, defined)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Evaluates every statement of a straight-line script for a whole chunk.
+    private void evaluateColumns(Column[] columns, int length) {
+        for (SwiftNodes.Node statement : program.body.children()) {
+            if (statement instanceof SwiftNodes.CompoundAssignNode) {
+                SwiftNodes.CompoundAssignNode update = (SwiftNodes.CompoundAssignNode) statement;
+                columns[update.slot] = apply(columns[update.slot], update.operator,
+                        evaluate(update.value, columns, length), update.token);
+                continue;
+            }
+            SwiftNodes.WriteVariableNode write = (SwiftNodes.WriteVariableNode) statement;
+            columns[write.slot] = evaluate(write.value, columns, length);
+        }
+    }
+
+    // Evaluates an expression for a whole chunk.
+    private static Column evaluate(SwiftNodes.Node node, Column[] columns, int length) {
+        if (node instanceof SwiftNodes.ReadVariableNode) {
+            return columns[((SwiftNodes.ReadVariableNode) node).slot];
+        }
+        if (node instanceof SwiftNodes.LongLiteralNode) {
+            long[] values = new long[length];
+            Arrays.fill(values, ((SwiftNodes.LongLiteralNode) node).value);
+            return new Column(values, null);
+        }
+        if (node instanceof SwiftNodes.DoubleLiteralNode) {
+            double[] values = new double[length];
+            Arrays.fill(values, ((SwiftNodes.DoubleLiteralNode) node).value);
+            return new Column(null, values);
+        }
+        if (node instanceof SwiftNodes.NegateNode) {
+            Column operand = evaluate(((SwiftNodes.NegateNode) node).operand, columns, length);
+            if (operand.longs != null) {
+                long[] result = new long[length];
+                for (int i = 0; i < length; i++) {
+                    result[i] = -operand.longs[i];
+                }
+                return new Column(result, null);
+            }
+            double[] result = new double[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = -operand.doubles[i];
+            }
+            return new Column(null, result);
+        }
+        SwiftNodes.BinaryNode binary = (SwiftNodes.BinaryNode) node;
+        return apply(evaluate(binary.left, columns, length), binary.operator,
+                evaluate(binary.right, columns, length), binary.token);
+    }
+
+    // Applies an operator to two columns, integers only stay integers if both columns are integers.
+    private static Column apply(Column left, char operator, Column right, Token token) {
+        if (left.longs != null && right.longs != null) {
+            return new Column(applyLong(left.longs, operator, right.longs, token), null);
+        }
+        return new Column(null, applyDouble(left.asDoubles(), operator, right.asDoubles()));
+    }
+
+    // Applies an operator to two integer columns, with the same division rules as SwiftNodes.applyLong.
+    private static long[] applyLong(long[] left, char operator, long[] right, Token token) {
+        long[] result = new long[left.length];
+        switch (operator) {
+            case '+':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] + right[i];
+                }
+                break;
+            case '-':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] - right[i];
+                }
+                break;
+            case '*':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] * right[i];
+                }
+                break;
+            default:
+                for (long divisor : right) {
+                    if (divisor == 0) {
+                        throw SwiftNodes.error(operator == '/' ? "Division by zero" : "Modulo by zero", token);
+                    }
+                }
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = SwiftNodes.applyLong(left[i], operator, right[i], token);
+                }
+        }
+        return result;
+    }
+
+    // Applies an operator to two floating point columns.
+    private static double[] applyDouble(double[] left, char operator, double[] right) {
+        double[] result = new double[left.length];
+        switch (operator) {
+            case '+':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] + right[i];
+                }
+                break;
+            case '-':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] - right[i];
+                }
+                break;
+            case '*':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] * right[i];
+                }
+                break;
+            case '/':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] / right[i];
+                }
+                break;
+            default:
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = left[i] % right[i];
+                }
+        }
+        return result;
+    }
+
+    // The values of one variable for every input of a chunk, either integers or floating point numbers.
+    private static final class Column {
+        final long[] longs;
+        final double[] doubles;
+
+        Column(long[] longs, double[] doubles) {
+            this.longs = longs;
+            this.doubles = doubles;
+        }
+
+        // Copies a part of an integer input column.
+        static Column of(long[] inputs, int from, int to) {
+            return new Column(Arrays.copyOfRange(inputs, from, to), null);
+        }
+
+        // Copies a part of a floating point input column.
+        static Column of(double[] inputs, int from, int to) {
+            return new Column(null, Arrays.copyOfRange(inputs, from, to));
+        }
+
+        // Returns the values as doubles, converting integers.
+        double[] asDoubles() {
+            if (doubles != null) {
+                return doubles;
+            }
+            double[] result = new double[longs.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = longs[i];
+            }
+            return result;
+        }
+
+        // Copies integer values into an output column.
+        void copyLongs(long[] outputs, int from, Token token) {
+            if (longs == null) {
+                throw SwiftNodes.error("Output variable is not an integer", token);
+            }
+            System.arraycopy(longs, 0, outputs, from, longs.length);
+        }
+
+        // Copies values into a floating point output column.
+        void copyDoubles(double[] outputs, int from) {
+            System.arraycopy(asDoubles(), 0, outputs, from, longs != null ? longs.length : doubles.length);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// This class is an ExecutionListener for debugger clients: it stops the program at breakpoints and after steps.
+// The program runs on its own thread; when it reaches a statement on a breakpoint line, or any statement while
+// stepping, that thread waits inside statementEntered() until the client calls resume() or step().
+// The client waits for the stop with awaitPause() and can read the last value written to every variable.
+class ScriptDebugger implements ExecutionListener {
+    private final Set<Integer> breakpoints = ConcurrentHashMap.newKeySet(); // Lines to stop at.
+    private final Map<String, Object> variables = new LinkedHashMap<>(); // Last written values, guarded by this.
+    private volatile boolean stepping; // Stops at the next statement.
+    private Token pausedAt; // Statement the program waits at, null while it runs. Guarded by this.
+
+    // Stops before every statement on the line.
+    void addBreakpoint(int line) {
+        breakpoints.add(line);
+    }
+
+    void removeBreakpoint(int line) {
+        breakpoints.remove(line);
+    }
+
+    // Stops at the next statement the program reaches.
+    void pause() {
+        stepping = true;
+    }
+
+    // Continues a stopped program until the next breakpoint.
+    synchronized void resume() {
+        stepping = false;
+        pausedAt = null;
+        notifyAll();
+    }
+
+    // Continues a stopped program until the next statement.
+    synchronized void step() {
+        stepping = true;
+        pausedAt = null;
+        notifyAll();
+    }
+
+    // Waits until the program stops, returns the statement it stopped at or null if the time ran out.
+    synchronized Token awaitPause(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pausedAt == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return pausedAt;
+    }
+
+    // Returns the statement the program waits at, or null while it runs.
+    synchronized Token pausedAt() {
+        return pausedAt;
+    }
+
+    // Returns the last value written to every variable, in the order the variables were first written.
+    synchronized Map<String, Object> variables() {
+        return new LinkedHashMap<>(variables);
+    }
+
+    @Override
+    public void statementEntered(Token token) {
+        if (!stepping && !breakpoints.contains(token.line())) {
+            return;
+        }
+        synchronized (this) {
+            pausedAt = token;
+            notifyAll();
+            while (pausedAt == token) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // The program continues, the caller sees the interrupt.
+                    pausedAt = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void variableWritten(Token token, String name, Object value, boolean declaration) {
+        variables.put(name, value);
+    }
+}
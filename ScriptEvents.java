@@ -0,0 +1,148 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// This class contains the Java Flight Recorder events of the interpreter, so script activity shows up
+// in a recording next to the GC and CPU events of the same time.
+// The events are switched on and off, and get their thresholds, like the JDK's own events: in a .jfc settings
+// file or on the command line, e.g. -XX:StartFlightRecording:swift.Loop#threshold=100ms.
+// An event that is not enabled in a running recording is not committed, and without a recording the JIT
+// removes the event objects, so the events cost nothing when they are not recorded.
+final class ScriptEvents {
+    private ScriptEvents() {
+    }
+
+    // One call of Tokenizer.tokenize().
+    @Name("swift.Tokenize")
+    @Label("Tokenize")
+    @Category("Swift Interpreter")
+    @Description("Source code turned into tokens")
+    @StackTrace(false)
+    static final class Tokenize extends Event {
+        @Label("Source Size")
+        @Description("Characters of the source code")
+        int sourceSize;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Error Count")
+        int errorCount;
+    }
+
+    // One execution of a compiled program, the compilation included when it was needed.
+    @Name("swift.Execution")
+    @Label("Script Execution")
+    @Category("Swift Interpreter")
+    @StackTrace(false)
+    static final class Execution extends Event {
+        @Label("Program Id")
+        @Description("Number of the compiled program in this JVM")
+        long programId;
+
+        @Label("Statements")
+        @Description("Statements of the compiled program")
+        int statements;
+
+        @Label("Outcome")
+        @Description("completed, compile error or runtime error")
+        String outcome;
+    }
+
+    // A while or for loop that ran longer than the threshold.
+    @Name("swift.Loop")
+    @Label("Long Loop")
+    @Category("Swift Interpreter")
+    @Threshold("20 ms")
+    @StackTrace(false)
+    static final class Loop extends Event {
+        @Label("Loop")
+        @Description("while or for")
+        String keyword;
+
+        @Label("Line")
+        int line;
+
+        @Label("Iterations")
+        long iterations;
+    }
+
+    // An error in a script: tokenizing, compiling or running it.
+    @Name("swift.Error")
+    @Label("Script Error")
+    @Category("Swift Interpreter")
+    @StackTrace(false)
+    static final class ScriptError extends Event {
+        @Label("Phase")
+        @Description("tokenize, compile or execute")
+        String phase;
+
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+
+        @Label("Column")
+        int column;
+    }
+
+    // Commits an ended loop event if it is recorded.
+    static void loopEnded(Loop event, Token token, long iterations) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyword = token.value;
+            event.line = token.line();
+            event.iterations = iterations;
+            event.commit();
+        }
+    }
+
+    // Commits an execution event if it is recorded.
+    static void executionEnded(Execution event, SwiftProgram program, String outcome) {
+        if (event.shouldCommit()) {
+            event.programId = program == null ? 0 : program.id;
+            event.statements = program == null ? 0 : statements(program.body);
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    // Records an error if errors are recorded. The message is only rendered then.
+    static void error(String phase, Diagnostic diagnostic) {
+        ScriptError event = new ScriptError();
+        if (event.isEnabled()) {
+            event.phase = phase;
+            event.message = diagnostic.message();
+            event.line = diagnostic.line();
+            event.column = diagnostic.column();
+            event.commit();
+        }
+    }
+
+    // Records an error without a position if errors are recorded.
+    static void error(String phase, String message) {
+        ScriptError event = new ScriptError();
+        if (event.isEnabled()) {
+            event.phase = phase;
+            event.message = message;
+            event.commit();
+        }
+    }
+
+    // Counts the statements of a tree, blocks and the nodes that wrap statements do not count.
+    private static int statements(SwiftNodes.Node node) {
+        int count = node instanceof SwiftNodes.StatementNode && !(node instanceof SwiftNodes.BlockNode
+                || node instanceof SwiftNodes.ReductionNode
+                || node instanceof SwiftNodes.SampledStatementNode || node instanceof SwiftNodes.InstrumentedNode)
+                ? 1 : 0;
+        for (SwiftNodes.Node child : node.children()) {
+            count += statements(child);
+        }
+        return count;
+    }
+}
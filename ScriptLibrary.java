@@ -0,0 +1,147 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// This class holds the script libraries of the JVM: named scripts whose globals programs get with "import name".
+// A library is tokenized and compiled once, when it is defined, and its tree is shared: every program that
+// imports it, in any interpreter and on any thread, runs the same tree, nothing is compiled or copied again.
+// Defining a library again with the same source keeps the compiled library; a source with another SHA-256 hash
+// is compiled into a new version. Programs compiled after that import the new version, programs compiled
+// before keep the version they imported.
+// A deterministic library that prints nothing (see ResultCache.isDeterministic) is also run once when it is
+// defined, importing it only copies its globals into the program. Arrays are copied, so programs can change them.
+final class ScriptLibrary {
+    private static final ConcurrentHashMap<String, Library> LIBRARIES = new ConcurrentHashMap<>();
+
+    private ScriptLibrary() {
+    }
+
+    // Defines a library, or keeps the compiled one if its source did not change, and returns it.
+    // The name must be an identifier. A compile error of the source is thrown and the library stays as it was.
+    static synchronized Library define(String name, String sourceCode) {
+        TokenBuffer nameTokens = new Tokenizer(name).tokenize();
+        if (nameTokens.size() != 2 || !nameTokens.type(0).equals("IDENTIFIER")) {
+            throw new IllegalArgumentException("Invalid library name: " + name);
+        }
+        String sourceHash = ResultCache.sha256(sourceCode);
+        Library library = LIBRARIES.get(name);
+        if (library != null && library.sourceHash.equals(sourceHash)) {
+            return library;
+        }
+        SwiftProgram program = new SwiftCompiler(new Tokenizer(sourceCode).tokenize(), List.of()).compile();
+        library = new Library(name, sourceHash, program);
+        LIBRARIES.put(name, library);
+        return library;
+    }
+
+    // Returns the current version of a library, or null if it is not defined.
+    static Library get(String name) {
+        return LIBRARIES.get(name);
+    }
+
+    // One compiled version of a library. It does not change after it is created.
+    static final class Library {
+        private final String name;
+        private final String sourceHash; // SHA-256 hash of the source, as a hex string.
+        private final SwiftProgram program; // Compiled tree, shared by all programs that import the library.
+        private final String[] names; // Globals of the library, in declaration order.
+        private final int[] slots; // Slot of every global in the library's frame.
+        private final boolean deterministic; // Whether the library reads no external input.
+        private final Object[] values; // Values of the globals after one run, null if every import runs the tree.
+
+        private Library(String name, String sourceHash, SwiftProgram program) {
+            this.name = name;
+            this.sourceHash = sourceHash;
+            this.program = program;
+            this.names = program.globalSlots.keySet().toArray(new String[0]);
+            this.slots = program.globalSlots.values().stream().mapToInt(Integer::intValue).toArray();
+            this.deterministic = ResultCache.isDeterministic(program.body);
+            this.values = deterministic && !prints(program.body) ? evaluate() : null;
+        }
+
+        String name() {
+            return name;
+        }
+
+        String sourceHash() {
+            return sourceHash;
+        }
+
+        // Returns the compiled tree, used by analyses of the library.
+        SwiftProgram program() {
+            return program;
+        }
+
+        // Returns the names of the globals a program gets by importing the library.
+        String[] names() {
+            return names.clone();
+        }
+
+        boolean isDeterministic() {
+            return deterministic;
+        }
+
+        // Checks if the library was run when it was defined, so imports only copy its globals.
+        boolean isPrecomputed() {
+            return values != null;
+        }
+
+        // Loads the globals into a frame of a program, targetSlots has the program's slot of every global in
+        // the order of names(). Globals the library does not set leave their slot unchanged.
+        void load(Frame frame, int[] targetSlots) {
+            if (values != null) {
+                for (int i = 0; i < values.length; i++) {
+                    Object value = values[i];
+                    if (value instanceof SwiftArray) {
+                        frame.countAllocation();
+                    }
+                    if (value != null) {
+                        frame.set(targetSlots[i], value instanceof SwiftArray ? ((SwiftArray) value).copy() : value);
+                    }
+                }
+                return;
+            }
+            Frame run = new Frame(program.slotCount, frame.out); // The library prints to the program's stream.
+            run.cost = frame.cost;
+            program.body.execute(run);
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                if (run.kinds[slot] != Frame.EMPTY) { // The run's values belong to this import only.
+                    frame.kinds[targetSlots[i]] = run.kinds[slot];
+                    frame.primitives[targetSlots[i]] = run.primitives[slot];
+                    frame.objects[targetSlots[i]] = run.objects[slot];
+                }
+            }
+        }
+
+        // Runs the tree once and returns the values of the globals, or null if the run fails:
+        // then every import runs the tree and reports the error itself.
+        private Object[] evaluate() {
+            Frame frame = new Frame(program.slotCount);
+            try {
+                program.body.execute(frame);
+            } catch (SwiftNodes.ScriptError e) {
+                return null;
+            }
+            Object[] values = new Object[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                Object value = frame.get(slots[i]);
+                values[i] = value instanceof CharSequence ? value.toString() : value; // Strings can grow in place.
+            }
+            return values;
+        }
+
+        // Checks if running a tree can print: it has a print, or imports a library that runs on every import.
+        private static boolean prints(SwiftNodes.Node node) {
+            if (node instanceof SwiftNodes.PrintNode
+                    || node instanceof SwiftNodes.ImportNode && !((SwiftNodes.ImportNode) node).library.isPrecomputed()) {
+                return true;
+            }
+            for (SwiftNodes.Node child : node.children()) {
+                if (prints(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
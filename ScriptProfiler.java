@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// This class is a sampling profiler for compiled programs.
+// While it is attached to a program, every statement publishes its stack before it runs: the loops around the
+// statement and its line, prepared once when the profiler attaches. A daemon thread reads the published stack
+// at a fixed rate and counts how often each stack was seen.
+// The counts are written in the collapsed stack format of flame graph tools: one line per stack, the frames
+// separated by ';' and the number of samples at the end, for example "script;for:2;while:5;line:6 42".
+// Publishing is a single store with opaque ordering, so the script never waits for the sampler, and a program
+// that is not attached runs its plain statements without publishing anything.
+class ScriptProfiler {
+    private static final VarHandle CURRENT;
+
+    static {
+        try {
+            CURRENT = MethodHandles.lookup().findVarHandle(ScriptProfiler.class, "current", String.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long intervalNanos; // Time between two samples.
+    private volatile String current; // Stack of the running statement, null while no statement runs.
+    private final Map<String, long[]> counts = new HashMap<>(); // Samples of every stack, guarded by itself.
+    private long idleSamples; // Samples taken while no statement ran, guarded by counts.
+    private final Map<SwiftProgram, List<Replacement>> attached = new IdentityHashMap<>();
+    private Thread sampler; // null while the profiler is stopped.
+
+    // Constructor: samples every millisecond.
+    ScriptProfiler() {
+        this(1, TimeUnit.MILLISECONDS);
+    }
+
+    // Constructor: samples at the given interval.
+    ScriptProfiler(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + interval);
+        }
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    // Makes the statements of a program publish their stacks. The program may be running on other threads,
+    // the statements of a block are replaced one by one and take effect the next time the block runs them.
+    synchronized void attach(SwiftProgram program) {
+        if (attached.containsKey(program)) {
+            return;
+        }
+        List<Replacement> replacements = new ArrayList<>();
+        instrument(program.body, "script", true, replacements);
+        attached.put(program, replacements);
+    }
+
+    // Puts the original statements of a program back.
+    synchronized void detach(SwiftProgram program) {
+        List<Replacement> replacements = attached.remove(program);
+        if (replacements == null) {
+            return;
+        }
+        for (Replacement replacement : replacements) {
+            if (replacement.statements[replacement.index] == replacement.sampled) {
+                replacement.statements[replacement.index] = replacement.sampled.statement;
+            }
+        }
+    }
+
+    // Starts the sampling thread.
+    synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = new Thread(this::sample, "ScriptProfiler");
+        sampler.setDaemon(true); // Never keeps the JVM alive.
+        sampler.start();
+    }
+
+    // Stops the sampling thread and waits for it, the samples are kept.
+    void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = sampler;
+            sampler = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Removes all samples.
+    void reset() {
+        synchronized (counts) {
+            counts.clear();
+            idleSamples = 0;
+        }
+    }
+
+    // Returns the number of samples taken while a statement ran.
+    long sampleCount() {
+        synchronized (counts) {
+            long total = 0;
+            for (long[] count : counts.values()) {
+                total += count[0];
+            }
+            return total;
+        }
+    }
+
+    // Returns the number of samples taken while no statement ran.
+    long idleSampleCount() {
+        synchronized (counts) {
+            return idleSamples;
+        }
+    }
+
+    // Writes the samples in collapsed stack format, one stack per line in sorted order.
+    void writeCollapsed(Writer writer) throws IOException {
+        Map<String, Long> sorted = new TreeMap<>();
+        synchronized (counts) {
+            for (Map.Entry<String, long[]> count : counts.entrySet()) {
+                sorted.put(count.getKey(), count.getValue()[0]);
+            }
+        }
+        for (Map.Entry<String, Long> count : sorted.entrySet()) {
+            writer.write(count.getKey() + " " + count.getValue() + "\n");
+        }
+        writer.flush();
+    }
+
+    // Returns the samples in collapsed stack format.
+    String toCollapsed() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeCollapsed(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A StringWriter does not throw.
+        }
+        return writer.toString();
+    }
+
+    // Publishes the stack of the statement that starts running, called by SampledStatementNode.
+    // Opaque ordering is enough: the sampler only needs to see the stack eventually, not in order
+    // with the frame writes of the statement, and unlike a volatile store it needs no fence.
+    void publish(String stack) {
+        CURRENT.setOpaque(this, stack);
+    }
+
+    // Body of the sampling thread: reads the published stack once per interval until interrupted.
+    private void sample() {
+        long next = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            next += intervalNanos;
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            } else {
+                next = System.nanoTime(); // Fell behind, samples that were missed are not made up.
+            }
+            String stack = current;
+            synchronized (counts) {
+                if (stack == null) {
+                    idleSamples++;
+                } else {
+                    counts.computeIfAbsent(stack, key -> new long[1])[0]++;
+                }
+            }
+        }
+    }
+
+    // Replaces every statement of the blocks below node by a SampledStatementNode.
+    // stack holds the frames of the loops around node; statements of the program's body are top level.
+    private void instrument(SwiftNodes.Node node, String stack, boolean topLevel, List<Replacement> replacements) {
+        if (node instanceof SwiftNodes.BlockNode) {
+            SwiftNodes.StatementNode[] statements = ((SwiftNodes.BlockNode) node).statements;
+            for (int i = 0; i < statements.length; i++) {
+                if (statements[i] instanceof SwiftNodes.SampledStatementNode) {
+                    continue; // Block reached twice, for example through a parallel reduction.
+                }
+                SwiftNodes.StatementNode statement = statements[i];
+                instrument(statement, stack, false, replacements);
+                SwiftNodes.SampledStatementNode sampled = new SwiftNodes.SampledStatementNode(statement, this,
+                        stack + ";line:" + statement.token.line(), topLevel);
+                statements[i] = sampled;
+                replacements.add(new Replacement(statements, i, sampled));
+            }
+            return;
+        }
+        String inner = stack;
+        if (node instanceof SwiftNodes.WhileNode) {
+            inner = stack + ";while:" + node.token.line();
+        } else if (node instanceof SwiftNodes.ForRangeNode) {
+            inner = stack + ";for:" + node.token.line();
+            SwiftNodes.StatementNode uncheckedBody = ((SwiftNodes.ForRangeNode) node).uncheckedBody;
+            if (uncheckedBody != null) {
+                instrument(uncheckedBody, inner, false, replacements);
+            }
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            instrument(child, inner, false, replacements);
+        }
+    }
+
+    // A statement of a block that was replaced by a SampledStatementNode.
+    private static final class Replacement {
+        final SwiftNodes.StatementNode[] statements;
+        final int index;
+        final SwiftNodes.SampledStatementNode sampled;
+
+        Replacement(SwiftNodes.StatementNode[] statements, int index, SwiftNodes.SampledStatementNode sampled) {
+            this.statements = statements;
+            this.index = index;
+            this.sampled = sampled;
+        }
+    }
+}
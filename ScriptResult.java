@@ -0,0 +1,41 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// This class gives access to the global variables of a script after it was executed.
+class ScriptResult {
+    private final Frame frame; // Frame the script was executed with.
+    private final Map<String, Integer> globalSlots; // Slot of every global variable.
+
+    // Constructor.
+    ScriptResult(Frame frame, Map<String, Integer> globalSlots) {
+        this.frame = frame;
+        this.globalSlots = globalSlots;
+    }
+
+    // Returns the value of a global variable, or null if it is not defined.
+    Object get(String name) {
+        Integer slot = globalSlots.get(name);
+        return slot == null ? null : frame.get(slot);
+    }
+
+    // Returns the value of an integer global variable without boxing it.
+    long getLong(String name) {
+        Integer slot = globalSlots.get(name);
+        if (slot == null || frame.kinds[slot] != Frame.LONG) {
+            throw new IllegalArgumentException("Not an integer variable: " + name);
+        }
+        return frame.primitives[slot];
+    }
+
+    // Returns all global variables with their values, in declaration order.
+    Map<String, Object> globals() {
+        Map<String, Object> globals = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> global : globalSlots.entrySet()) {
+            Object value = frame.get(global.getValue());
+            if (value != null) {
+                globals.put(global.getKey(), value);
+            }
+        }
+        return globals;
+    }
+}
@@ -0,0 +1,316 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+// This class is a namespace of global variables that several interpreters share, also on different threads.
+// Every variable is a cell in a concurrent map, and every update of a variable is one atomic compare-and-set
+// on its cell, so updates of different variables never wait for each other.
+// A script run does not touch the store while it runs: it starts from a snapshot, works on its own frame,
+// and commits its writes when it ends. Variables the script only changes with += and -= (and ++ / --) are
+// committed as the difference to the snapshot, so concurrent runs that count into the same variable all count.
+// Other variables the script changed are committed with their final value.
+// Snapshots are consistent: a snapshot holds all or none of the writes of every commit and single update.
+// Every write counts itself as started and as finished in the stripe of its thread; a snapshot reads the
+// variables while no write is in progress and reads them again if a write started meanwhile. Writes only
+// touch the counters of their own stripe, so they do not wait for each other, and a snapshot normally takes
+// no lock. When writes keep it from reading ATTEMPTS times, the snapshot closes the store: new writes wait
+// until it has read the variables, so it only waits for the writes that are in progress.
+// Values are kept immutable: strings are stored as String and arrays are copied in and out.
+class SharedGlobals {
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+    private static final int PADDING = 16; // Counters of different stripes are 128 bytes apart, on different cache lines.
+    private static final int ATTEMPTS = 64; // Reads of a snapshot before it closes the store for new writes.
+
+    private final ConcurrentHashMap<String, Cell> cells = new ConcurrentHashMap<>();
+    private final AtomicLongArray started = new AtomicLongArray(STRIPES * PADDING); // Writes started, per stripe.
+    private final AtomicLongArray finished = new AtomicLongArray(STRIPES * PADDING); // Writes finished, per stripe.
+    private final Object gate = new Object(); // Held by a snapshot while the store is closed.
+    private volatile boolean closed; // Whether new writes wait for a snapshot, see startWrite().
+
+    // Returns the value of a variable, or null if it is not defined.
+    Object get(String name) {
+        Cell cell = cells.get(name);
+        return cell == null ? null : copyOut(cell.value);
+    }
+
+    // Sets a variable, defining it if needed.
+    void set(String name, Object value) {
+        int stripe = startWrite();
+        try {
+            cell(name).value = copyIn(value);
+        } finally {
+            finishWrite(stripe);
+        }
+    }
+
+    // Adds to a variable atomically, as x += delta, and returns the new value.
+    // A variable that is not defined gets the value delta.
+    Object add(String name, Object delta) {
+        return update(name, value -> value == null ? delta : plus(value, delta));
+    }
+
+    // Replaces the value of a variable atomically by function(value), and returns the new value.
+    // The function gets null for a variable that is not defined. It can be called more than once when
+    // other threads update the variable at the same time, so it must not have side effects.
+    // Only the compare-and-set counts as a write, so a slow function does not hold back snapshots.
+    Object update(String name, UnaryOperator<Object> function) {
+        Cell cell = cell(name);
+        while (true) {
+            Object current = cell.value;
+            Object updated = copyIn(function.apply(copyOut(current)));
+            boolean stored;
+            int stripe = startWrite();
+            try {
+                stored = Cell.VALUE.compareAndSet(cell, current, updated);
+            } finally {
+                finishWrite(stripe);
+            }
+            if (stored) {
+                return copyOut(updated);
+            }
+        }
+    }
+
+    // Returns the names of the variables, defined or not, for compiling programs that use them.
+    Set<String> names() {
+        return cells.keySet();
+    }
+
+    // Returns the values of all defined variables at one point in time.
+    Map<String, Object> snapshot() {
+        return snapshot(cells.keySet());
+    }
+
+    // Returns the values of the given variables that are defined, at one point in time.
+    // A program only needs the variables it has slots for, see SwiftProgram.globalSlots.
+    Map<String, Object> snapshot(Set<String> names) {
+        long[] counts = new long[STRIPES];
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            Map<String, Object> values = read(names, counts);
+            if (values != null) {
+                return values;
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (gate) {
+            closed = true;
+            try {
+                while (true) { // Ends when the writes in progress have finished.
+                    Map<String, Object> values = read(names, counts);
+                    if (values != null) {
+                        return values;
+                    }
+                    Thread.onSpinWait();
+                }
+            } finally {
+                closed = false;
+            }
+        }
+    }
+
+    // Reads the given variables while no write is in progress, or returns null if a write was in progress
+    // or started while they were read.
+    private Map<String, Object> read(Set<String> names, long[] counts) {
+        if (!idle(counts)) {
+            return null;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String name : names) {
+            Cell cell = cells.get(name);
+            Object value = cell == null ? null : cell.value;
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        if (!unchanged(counts)) {
+            return null;
+        }
+        values.replaceAll((name, value) -> copyOut(value));
+        return values;
+    }
+
+    // Commits the final globals of a script run that started from the given snapshot, see the class comment.
+    // written is the result of writes() for the script.
+    void commit(Map<String, Object> snapshot, Map<String, Object> values, Map<String, Boolean> written) {
+        int stripe = startWrite();
+        try {
+            for (Map.Entry<String, Boolean> write : written.entrySet()) {
+                String name = write.getKey();
+                Object value = values.get(name);
+                if (value == null) {
+                    continue;
+                }
+                Object start = snapshot.get(name);
+                if (write.getValue() && value instanceof Long && start instanceof Long) {
+                    long delta = (Long) value - (Long) start;
+                    if (delta != 0) {
+                        add(cell(name), delta);
+                    }
+                } else if (!sameValue(value, start)) {
+                    cell(name).value = copyIn(value);
+                }
+            }
+        } finally {
+            finishWrite(stripe);
+        }
+    }
+
+    // Returns the globals a program writes, mapped to true if every write is a += or -= (or ++ / --).
+    // Globals the program does not write are not committed, so a run never undoes the writes of other runs.
+    static Map<String, Boolean> writes(SwiftProgram program) {
+        Map<Integer, Boolean> slots = new HashMap<>();
+        collectWrites(program.body, slots);
+        Map<String, Boolean> writes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> global : program.globalSlots.entrySet()) {
+            Boolean additive = slots.get(global.getValue());
+            if (additive != null) {
+                writes.put(global.getKey(), additive);
+            }
+        }
+        return writes;
+    }
+
+    // Counts a write as started in the stripe of the current thread and returns the stripe.
+    // While a snapshot has closed the store, the write is counted as finished again and waits for the snapshot.
+    // closed is read after started is incremented, so a snapshot that closes the store sees every write
+    // that did not see it closed.
+    private int startWrite() {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        while (true) {
+            started.incrementAndGet(stripe * PADDING);
+            if (!closed) {
+                return stripe;
+            }
+            finished.incrementAndGet(stripe * PADDING);
+            synchronized (gate) { // Taken when the snapshot has read the variables.
+            }
+        }
+    }
+
+    // Counts a write as finished, after all its values are stored.
+    private void finishWrite(int stripe) {
+        finished.incrementAndGet(stripe * PADDING);
+    }
+
+    // Checks if no write is in progress, and stores the started writes of every stripe in counts.
+    // finished is read before started: if both are equal, every write that started until then had finished.
+    private boolean idle(long[] counts) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            long done = finished.get(stripe * PADDING);
+            counts[stripe] = started.get(stripe * PADDING);
+            if (done != counts[stripe]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Checks if no write started since idle() stored the counts, so the values read in between are consistent.
+    private boolean unchanged(long[] counts) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (started.get(stripe * PADDING) != counts[stripe]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the cell of a variable, creating an empty one if needed.
+    private Cell cell(String name) {
+        return cells.computeIfAbsent(name, key -> new Cell());
+    }
+
+    // Adds to the value of a cell.
+    private static void add(Cell cell, long delta) {
+        while (true) {
+            Object current = cell.value;
+            Object updated = current instanceof Long ? (Long) current + delta : plus(current, delta);
+            if (Cell.VALUE.compareAndSet(cell, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    // Returns value + delta with the rules of the + operator of scripts.
+    private static Object plus(Object value, Object delta) {
+        if (value instanceof CharSequence || delta instanceof CharSequence) {
+            return String.valueOf(value) + delta;
+        }
+        if (!(value instanceof Number) || !(delta instanceof Number)) {
+            throw new IllegalArgumentException("Invalid operands for operator +: " + value + ", " + delta);
+        }
+        if (value instanceof Double || delta instanceof Double) {
+            return ((Number) value).doubleValue() + ((Number) delta).doubleValue();
+        }
+        return ((Number) value).longValue() + ((Number) delta).longValue();
+    }
+
+    // Finds the slots a tree writes. A slot maps to true while every write is a += or -=.
+    private static void collectWrites(SwiftNodes.Node node, Map<Integer, Boolean> written) {
+        if (node instanceof SwiftNodes.CompoundAssignNode) {
+            SwiftNodes.CompoundAssignNode update = (SwiftNodes.CompoundAssignNode) node;
+            boolean additive = update.operator == '+' || update.operator == '-';
+            written.merge(update.slot, additive, Boolean::logicalAnd);
+        } else if (node instanceof SwiftNodes.WriteVariableNode) {
+            written.put(((SwiftNodes.WriteVariableNode) node).slot, false);
+        } else if (node instanceof SwiftNodes.WriteElementNode) {
+            written.put(((SwiftNodes.WriteElementNode) node).array.slot, false);
+        } else if (node instanceof SwiftNodes.AppendNode) {
+            written.put(((SwiftNodes.AppendNode) node).array.slot, false);
+        } else if (node instanceof SwiftNodes.ForRangeNode) {
+            written.put(((SwiftNodes.ForRangeNode) node).counterSlot, false);
+        } else if (node instanceof SwiftNodes.ImportNode) {
+            for (int slot : ((SwiftNodes.ImportNode) node).slots) {
+                written.put(slot, false);
+            }
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            collectWrites(child, written);
+        }
+    }
+
+    // Checks if a value is the one a variable had in the snapshot. Arrays always count as changed.
+    private static boolean sameValue(Object value, Object start) {
+        if (value instanceof CharSequence && start instanceof CharSequence) {
+            return value.toString().equals(start.toString());
+        }
+        return !(value instanceof SwiftArray) && value.equals(start);
+    }
+
+    // Returns the value to store: strings are stored as String, arrays as a copy.
+    private static Object copyIn(Object value) {
+        if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        }
+        if (value instanceof CharSequence) {
+            return value.toString();
+        }
+        return value instanceof SwiftArray ? ((SwiftArray) value).copy() : value;
+    }
+
+    // Returns a stored value to a caller, arrays as a copy the caller can change.
+    private static Object copyOut(Object value) {
+        return value instanceof SwiftArray ? ((SwiftArray) value).copy() : value;
+    }
+
+    // One variable. The value is null while the variable is not defined.
+    private static final class Cell {
+        static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Cell.class, "value", Object.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        volatile Object value;
+    }
+}
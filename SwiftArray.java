@@ -0,0 +1,202 @@
+import java.util.Arrays;
+import java.util.List;
+
+// This class represents an array value of the interpreter.
+// Integer and floating point elements are kept in primitive long[]/double[] storage,
+// only arrays that mix numbers with other values fall back to boxed Object[] storage.
+class SwiftArray {
+    static final int LONG = 0;   // Storage kind for arrays whose elements are all integers.
+    static final int DOUBLE = 1; // Storage kind for arrays of numbers containing at least one floating point value.
+    static final int OBJECT = 2; // Storage kind for mixed arrays (boxed fallback).
+
+    private int kind; // Current storage kind.
+    private long[] longs; // Storage used when kind is LONG.
+    private double[] doubles; // Storage used when kind is DOUBLE.
+    private Object[] objects; // Storage used when kind is OBJECT.
+    private int size; // Number of elements in use, the backing array can be larger.
+
+    // Constructor: creates an empty array with primitive long storage of the given capacity.
+    SwiftArray(int capacity) {
+        this.kind = LONG;
+        this.longs = new long[Math.max(capacity, 4)];
+        this.size = 0;
+    }
+
+    // Builds an array from evaluated literal elements, picking the narrowest storage kind that fits all of them.
+    static SwiftArray of(List<Object> elements) {
+        SwiftArray array = new SwiftArray(elements.size());
+        array.kind = kindOf(elements);
+        if (array.kind == DOUBLE) {
+            array.doubles = new double[array.longs.length];
+            array.longs = null;
+        } else if (array.kind == OBJECT) {
+            array.objects = new Object[array.longs.length];
+            array.longs = null;
+        }
+        for (Object element : elements) {
+            array.append(element);
+        }
+        return array;
+    }
+
+    // Builds an array of count copies of value, like Swift's Array(repeating:count:).
+    static SwiftArray repeating(Object value, int count) {
+        SwiftArray array = of(List.of(value));
+        array.size = 0;
+        array.ensureCapacity(count);
+        switch (array.kind) {
+            case LONG -> Arrays.fill(array.longs, 0, count, ((Number) value).longValue());
+            case DOUBLE -> Arrays.fill(array.doubles, 0, count, ((Number) value).doubleValue());
+            default -> Arrays.fill(array.objects, 0, count, value);
+        }
+        array.size = count;
+        return array;
+    }
+
+    // Returns the storage kind that can hold every element without boxing, if there is one.
+    private static int kindOf(List<Object> elements) {
+        int kind = LONG;
+        for (Object element : elements) {
+            if (isInteger(element)) {
+                continue; // Integers fit in both long and double storage.
+            }
+            if (element instanceof Double) {
+                kind = DOUBLE; // One floating point value widens the whole array.
+            } else {
+                return OBJECT; // Anything that is not a number forces boxed storage.
+            }
+        }
+        return kind;
+    }
+
+    // Checks if a value is an integer value of the interpreter.
+    private static boolean isInteger(Object value) {
+        return value instanceof Integer || value instanceof Long;
+    }
+
+    // Returns the number of elements.
+    int size() {
+        return size;
+    }
+
+    // Returns the current storage kind.
+    int kind() {
+        return kind;
+    }
+
+    // Reads an element as a long. Index must already be checked by the caller and kind must be LONG.
+    long getLong(int index) {
+        return longs[index];
+    }
+
+    // Reads an element as a double. Index must already be checked by the caller and kind must not be OBJECT.
+    double getDouble(int index) {
+        return kind == LONG ? longs[index] : doubles[index];
+    }
+
+    // Reads an element as a boxed value. Index must already be checked by the caller.
+    Object get(int index) {
+        return switch (kind) {
+            case LONG -> longs[index];
+            case DOUBLE -> doubles[index];
+            default -> objects[index];
+        };
+    }
+
+    // Writes a long element without boxing when the storage allows it. Index must already be checked.
+    void setLong(int index, long value) {
+        switch (kind) {
+            case LONG -> longs[index] = value;
+            case DOUBLE -> doubles[index] = value;
+            default -> objects[index] = value;
+        }
+    }
+
+    // Writes an element, widening the storage kind if the value does not fit. Index must already be checked.
+    void set(int index, Object value) {
+        if (isInteger(value)) {
+            setLong(index, ((Number) value).longValue());
+            return;
+        }
+        if (value instanceof Double && kind != OBJECT) {
+            if (kind == LONG) {
+                convertTo(DOUBLE); // First floating point value, switch long storage to double storage.
+            }
+            doubles[index] = (Double) value;
+            return;
+        }
+        if (kind != OBJECT) {
+            convertTo(OBJECT); // Non numeric value, fall back to boxed storage.
+        }
+        objects[index] = value;
+    }
+
+    // Appends an element at the end, growing the backing storage when needed.
+    void append(Object value) {
+        ensureCapacity(size + 1);
+        size++;
+        set(size - 1, value);
+    }
+
+    // Returns an array with the same elements and storage kind, for callers that must not share this one.
+    SwiftArray copy() {
+        SwiftArray copy = new SwiftArray(0);
+        copy.kind = kind;
+        copy.longs = longs == null ? null : Arrays.copyOf(longs, size);
+        copy.doubles = doubles == null ? null : Arrays.copyOf(doubles, size);
+        copy.objects = objects == null ? null : Arrays.copyOf(objects, size);
+        copy.size = size;
+        return copy;
+    }
+
+    // Grows the backing storage so it can hold at least the given number of elements.
+    private void ensureCapacity(int capacity) {
+        int length = switch (kind) {
+            case LONG -> longs.length;
+            case DOUBLE -> doubles.length;
+            default -> objects.length;
+        };
+        if (capacity <= length) {
+            return;
+        }
+        int newLength = Math.max(capacity, length * 2);
+        switch (kind) {
+            case LONG -> longs = Arrays.copyOf(longs, newLength);
+            case DOUBLE -> doubles = Arrays.copyOf(doubles, newLength);
+            default -> objects = Arrays.copyOf(objects, newLength);
+        }
+    }
+
+    // Converts the storage to a wider kind, copying the elements that are in use.
+    private void convertTo(int newKind) {
+        int length = kind == LONG ? longs.length : doubles.length;
+        if (newKind == DOUBLE) {
+            doubles = new double[length];
+            for (int i = 0; i < size; i++) {
+                doubles[i] = longs[i];
+            }
+            longs = null;
+        } else {
+            objects = new Object[length];
+            for (int i = 0; i < size; i++) {
+                objects[i] = get(i);
+            }
+            longs = null;
+            doubles = null;
+        }
+        kind = newKind;
+    }
+
+    // This method returns a string interpretation of the array in Swift's format, e.g. [1, 2, 3].
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(get(i));
+        }
+        return result.append("]").toString();
+    }
+}
@@ -0,0 +1,629 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+// This class compiles a list of tokens into an execution tree (see SwiftNodes).
+// Tokens are read only once, variables are resolved to frame slots and break/continue to their loops,
+// so executing the tree never looks at tokens or variable names again.
+// The tokens are read from the columns of a TokenBuffer, Token objects are only created for the nodes.
+class SwiftCompiler {
+    private final TokenBuffer tokens; // Tokens to compile.
+    private int pos; // Current position in the token list.
+    private final Stack<Map<String, Integer>> scopes = new Stack<>(); // Variable name to slot, one map per block.
+    private int slotCount; // Number of slots allocated so far.
+    private int loopDepth; // Number of loops around the current statement, break/continue need at least one.
+    private final List<int[]> uncheckedArrays = new ArrayList<>(); // {counter slot, array slots...} of enclosing
+                                                                    // loops whose range is checked before the loop
+    private List<Diagnostic> diagnostics; // Collects errors when compiling with recovery, null when the first error is thrown.
+
+    // Constructor: the names of globals that already exist get the first slots, in the given order.
+    SwiftCompiler(List<Token> tokens, Iterable<String> globalNames) {
+        this.tokens = TokenBuffer.of(tokens);
+        this.pos = 0;
+        Map<String, Integer> globals = new LinkedHashMap<>();
+        for (String name : globalNames) {
+            globals.put(name, slotCount++);
+        }
+        scopes.push(globals);
+    }
+
+    // Compiles the whole token list, the first error is thrown.
+    SwiftProgram compile() {
+        return compile(null);
+    }
+
+    // Compiles the whole token list and adds every error to diagnostics instead of stopping at the first one.
+    // A statement with an error is left out, the program is only meant to be run when there were no errors.
+    SwiftProgram compile(List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        List<SwiftNodes.StatementNode> statements = new ArrayList<>();
+        while (pos < tokens.size() && !tokens.type(pos).equals("EOF")) {
+            SwiftNodes.StatementNode statement = compileStatementOrSkip();
+            if (statement != null) {
+                statements.add(statement);
+            }
+        }
+        Token first = tokens.isEmpty() ? new Token("EOF", "", 0, LineIndex.of("")) : tokens.get(0);
+        SwiftNodes.BlockNode body = new SwiftNodes.BlockNode(first, statements.toArray(new SwiftNodes.StatementNode[0]));
+        return new SwiftProgram(body, slotCount, new LinkedHashMap<>(scopes.get(0)));
+    }
+
+    //compiles one statement; when compiling with recovery, an error is recorded and the statement is skipped
+    private SwiftNodes.StatementNode compileStatementOrSkip() {
+        if (diagnostics == null) {
+            return compileStatement();
+        }
+        int start = pos;
+        int scopeCount = scopes.size();//state of the enclosing statements, restored after an error
+        int depth = loopDepth;
+        int uncheckedCount = uncheckedArrays.size();
+        try {
+            return compileStatement();
+        } catch (SwiftNodes.ScriptError e) {
+            diagnostics.add(e.diagnostic);
+            while (scopes.size() > scopeCount) {
+                scopes.pop();
+            }
+            loopDepth = depth;
+            while (uncheckedArrays.size() > uncheckedCount) {
+                uncheckedArrays.remove(uncheckedArrays.size() - 1);
+            }
+            skipStatement(start, pos);
+            return null;
+        }
+    }
+
+    //skips the rest of a statement with an error, including any blocks it opened
+    //it stops after the error at the first keyword or identifier that starts a line outside of those blocks,
+    //or at a } that closes the enclosing block
+    private void skipStatement(int start, int errorPos) {
+        pos = start;
+        int depth = 0;
+        while (pos < tokens.size() && !tokens.type(pos).equals("EOF")) {
+            if (tokens.is(pos, "PUNCTUATION", "}")) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            } else if (tokens.is(pos, "PUNCTUATION", "{")) {
+                depth++;
+            } else if (depth == 0 && pos > start && pos >= errorPos && tokens.line(pos) > tokens.line(pos - 1)
+                    && (tokens.type(pos).equals("IDENTIFIER")
+                    || tokens.type(pos).equals("KEYWORD") && !tokens.value(pos).equals("else"))) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    //compiles one statement, returns null for tokens that are skipped
+    private SwiftNodes.StatementNode compileStatement() {
+        switch (tokens.type(pos)) {
+            case "KEYWORD":
+                return compileKeyword(tokens.get(pos));
+            case "IDENTIFIER":
+                return compileAssignment();
+            default://unknown tokens are ignored
+                pos++;
+                return null;
+        }
+    }
+
+    private SwiftNodes.StatementNode compileKeyword(Token token) {//compiles statements that start with a keyword
+        switch (token.value) {
+            case "var":
+            case "let":
+                return compileDeclaration();
+            case "while":
+                return compileWhileLoop();
+            case "for":
+                return compileForLoop();
+            case "if":
+                return compileIfStatement();
+            case "print":
+                return compilePrint();
+            case "break":
+                return compileJump(token, SwiftNodes.BREAK);
+            case "continue":
+                return compileJump(token, SwiftNodes.CONTINUE);
+            case "import":
+                return compileImport();
+            default://if the keyword is unrecognized the error is thrown
+                throw SwiftNodes.error("Unhandled keyword: %s", token, token.value);
+        }
+    }
+
+    //compiles var and let declarations, the variable gets a new slot in the current scope
+    private SwiftNodes.StatementNode compileDeclaration() {
+        Token keywordToken = expect("KEYWORD");//var or let
+        Token nameToken = expect("IDENTIFIER");
+        expect("OPERATOR", "=");
+        SwiftNodes.ExpressionNode value = compileExpression();//RHS is compiled before the name is visible
+        if (scopes.peek().containsKey(nameToken.value)) {
+            throw SwiftNodes.error("Variable already declared in current scope: %s", nameToken, nameToken.value);
+        }
+        int slot = declare(nameToken.value);
+        return new SwiftNodes.WriteVariableNode(keywordToken, slot, nameToken.value, value, true);
+    }
+
+    //compiles assignments: name = value, name[index] = value and name.append(value)
+    private SwiftNodes.StatementNode compileAssignment() {
+        Token nameToken = expect("IDENTIFIER");
+        if (check("PUNCTUATION", "[")) {//a[i] = value assigns a single array element
+            SwiftNodes.ReadVariableNode array = arrayVariable(nameToken);
+            Token bracketToken = expect("PUNCTUATION", "[");
+            SwiftNodes.ExpressionNode index = compileExpression();
+            expect("PUNCTUATION", "]");
+            expect("OPERATOR", "=");
+            return new SwiftNodes.WriteElementNode(bracketToken, array, index, compileExpression());
+        }
+        if (check("PUNCTUATION", ".")) {//a.append(value) adds an element at the end of the array
+            SwiftNodes.ReadVariableNode array = arrayVariable(nameToken);
+            expect("PUNCTUATION", ".");
+            expect("IDENTIFIER", "append");//append is the only supported array method
+            expect("PUNCTUATION", "(");
+            SwiftNodes.ExpressionNode value = compileExpression();
+            expect("PUNCTUATION", ")");
+            return new SwiftNodes.AppendNode(nameToken, array, value);
+        }
+        if (pos < tokens.size() && tokens.type(pos).equals("OPERATOR") && isCompoundOperator(tokens.value(pos))) {
+            return compileCompoundAssignment(nameToken);
+        }
+        expect("OPERATOR", "=");
+        SwiftNodes.ExpressionNode value = compileExpression();
+        Integer slot = lookup(nameToken.value);
+        if (slot == null) {//assignments to undeclared variables fail when they are executed
+            return new SwiftNodes.UndefinedAssignmentNode(nameToken, nameToken.value);
+        }
+        return new SwiftNodes.WriteVariableNode(nameToken, slot, nameToken.value, value, false);
+    }
+
+    //compiles name += value, -=, *=, /= and name++, name--, the slot is updated in place
+    private SwiftNodes.StatementNode compileCompoundAssignment(Token nameToken) {
+        Token operatorToken = expect("OPERATOR");
+        SwiftNodes.ExpressionNode value;
+        if (operatorToken.value.equals("++") || operatorToken.value.equals("--")) {
+            value = new SwiftNodes.LongLiteralNode(operatorToken, 1);//x++ is x += 1
+        } else {
+            value = compileExpression();
+        }
+        Integer slot = lookup(nameToken.value);
+        if (slot == null) {//assignments to undeclared variables fail when they are executed
+            return new SwiftNodes.UndefinedAssignmentNode(nameToken, nameToken.value);
+        }
+        return new SwiftNodes.CompoundAssignNode(operatorToken, slot, nameToken.value,
+                operatorToken.value.charAt(0), value);
+    }
+
+    //compiles while loops
+    private SwiftNodes.StatementNode compileWhileLoop() {
+        Token whileToken = expect("KEYWORD", "while");
+        SwiftNodes.ConditionNode condition = compileCondition();
+        loopDepth++;
+        SwiftNodes.StatementNode body = compileBlock();
+        loopDepth--;
+        SwiftNodes.WhileNode loop = new SwiftNodes.WhileNode(whileToken, condition, body);
+        return reduction(loop, ParallelReduction.of(loop));
+    }
+
+    //wraps a loop that is a reduction, so it can run in parallel
+    private static SwiftNodes.StatementNode reduction(SwiftNodes.StatementNode loop, ParallelReduction reduction) {
+        return reduction == null ? loop : new SwiftNodes.ReductionNode(loop, reduction);
+    }
+
+    //compiles for i in start...end and for i in start..<end
+    //when the body indexes arrays with the counter, a second copy of the body is compiled
+    //without those bounds checks; the loop picks it when its range fits inside the arrays
+    private SwiftNodes.StatementNode compileForLoop() {
+        Token forToken = expect("KEYWORD", "for");
+        Token nameToken = expect("IDENTIFIER");//loop variable
+        expect("IDENTIFIER", "in");
+        SwiftNodes.ExpressionNode start = compileExpression();//bounds are evaluated once per loop
+        Token rangeToken = expect("OPERATOR");
+        if (!isRangeOperator(rangeToken.value)) {
+            throw SwiftNodes.error("Expected range operator but found %s", rangeToken, rangeToken.value);
+        }
+        SwiftNodes.ExpressionNode end = compileExpression();
+
+        scopes.push(new HashMap<>());//scope of the loop variable
+        int counterSlot = declare(nameToken.value);
+        int bodyPos = pos;
+        loopDepth++;
+        int errorCount = diagnostics == null ? 0 : diagnostics.size();
+        SwiftNodes.StatementNode body = compileBlock();
+        SwiftNodes.StatementNode uncheckedBody = null;
+        int[] guardSlots = hoistableArraySlots(body, counterSlot);
+        if (guardSlots.length > 0 && (diagnostics == null || diagnostics.size() == errorCount)) {//errors are reported once
+            int endPos = pos;
+            pos = bodyPos;//compiles the body again, this time without the bounds checks
+            int[] context = new int[guardSlots.length + 1];
+            context[0] = counterSlot;
+            System.arraycopy(guardSlots, 0, context, 1, guardSlots.length);
+            uncheckedArrays.add(context);
+            uncheckedBody = compileBlock();
+            uncheckedArrays.remove(uncheckedArrays.size() - 1);
+            pos = endPos;
+        }
+        loopDepth--;
+        scopes.pop();
+        SwiftNodes.ForRangeNode loop = new SwiftNodes.ForRangeNode(forToken, counterSlot, start, end,
+                rangeToken.value.equals("..."), body, uncheckedBody, guardSlots);
+        return reduction(loop, ParallelReduction.of(loop));
+    }
+
+    //finds arrays that the body indexes with the loop counter and never reassigns,
+    //for them one range check before the loop is enough
+    private int[] hoistableArraySlots(SwiftNodes.Node body, int counterSlot) {
+        Set<Integer> written = new HashSet<>();
+        List<SwiftNodes.IndexNode> indexes = new ArrayList<>();
+        collect(body, written, indexes);
+        if (written.contains(counterSlot)) {
+            return new int[0];//the body changes the counter, so the index is not the counter any more
+        }
+        Set<Integer> arrays = new HashSet<>();
+        for (SwiftNodes.IndexNode index : indexes) {
+            if (index.index instanceof SwiftNodes.ReadVariableNode
+                    && ((SwiftNodes.ReadVariableNode) index.index).slot == counterSlot
+                    && !written.contains(index.array.slot)) {
+                arrays.add(index.array.slot);
+            }
+        }
+        return arrays.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    //collects written slots and array reads of a subtree
+    private void collect(SwiftNodes.Node node, Set<Integer> written, List<SwiftNodes.IndexNode> indexes) {
+        if (node instanceof SwiftNodes.WriteVariableNode) {
+            written.add(((SwiftNodes.WriteVariableNode) node).slot);
+        } else if (node instanceof SwiftNodes.CompoundAssignNode) {
+            written.add(((SwiftNodes.CompoundAssignNode) node).slot);
+        } else if (node instanceof SwiftNodes.ForRangeNode) {
+            written.add(((SwiftNodes.ForRangeNode) node).counterSlot);
+        } else if (node instanceof SwiftNodes.IndexNode) {
+            indexes.add((SwiftNodes.IndexNode) node);
+        }
+        for (SwiftNodes.Node child : node.children()) {
+            collect(child, written, indexes);
+        }
+    }
+
+    //compiles if and if-else statements
+    private SwiftNodes.StatementNode compileIfStatement() {
+        Token ifToken = expect("KEYWORD", "if");
+        SwiftNodes.ConditionNode condition = compileCondition();
+        SwiftNodes.StatementNode thenBlock = compileBlock();
+        SwiftNodes.StatementNode elseBlock = null;
+        if (check("KEYWORD", "else")) {
+            expect("KEYWORD", "else");
+            elseBlock = compileBlock();
+        }
+        return new SwiftNodes.IfNode(ifToken, condition, thenBlock, elseBlock);
+    }
+
+    //compiles print(value)
+    private SwiftNodes.StatementNode compilePrint() {
+        Token printToken = expect("KEYWORD", "print");
+        expect("PUNCTUATION", "(");
+        SwiftNodes.ExpressionNode value = compileExpression();
+        expect("PUNCTUATION", ")");
+        return new SwiftNodes.PrintNode(printToken, value);
+    }
+
+    //compiles break and continue, they always belong to the innermost loop
+    private SwiftNodes.StatementNode compileJump(Token token, int completion) {
+        pos++;
+        if (loopDepth == 0) {
+            throw SwiftNodes.error("'%s' is only allowed inside a loop", token, token.value);
+        }
+        return new SwiftNodes.JumpNode(token, completion);
+    }
+
+    //compiles import name, the globals of the library become globals of the program, see ScriptLibrary
+    //a global the program declared before the import keeps its slot and gets the library's value
+    private SwiftNodes.StatementNode compileImport() {
+        Token token = expect("KEYWORD", "import");
+        if (scopes.size() > 1) {
+            throw SwiftNodes.error("Libraries can only be imported at the top level", token);
+        }
+        Token name = expect("IDENTIFIER");
+        ScriptLibrary.Library library = ScriptLibrary.get(name.value);
+        if (library == null) {
+            throw SwiftNodes.error("Unknown library: %s", name, name.value);
+        }
+        String[] names = library.names();
+        int[] slots = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Integer slot = scopes.peek().get(names[i]);
+            slots[i] = slot != null ? slot : declare(names[i]);
+        }
+        return new SwiftNodes.ImportNode(token, library, slots);
+    }
+
+    //compiles { statements } with its own scope
+    private SwiftNodes.StatementNode compileBlock() {
+        Token openToken = expect("PUNCTUATION", "{");
+        scopes.push(new HashMap<>());
+        List<SwiftNodes.StatementNode> statements = new ArrayList<>();
+        while (pos < tokens.size() && !tokens.type(pos).equals("EOF") && !check("PUNCTUATION", "}")) {
+            SwiftNodes.StatementNode statement = compileStatementOrSkip();
+            if (statement != null) {
+                statements.add(statement);
+            }
+        }
+        expect("PUNCTUATION", "}");
+        scopes.pop();
+        return new SwiftNodes.BlockNode(openToken, statements.toArray(new SwiftNodes.StatementNode[0]));
+    }
+
+    //compiles the condition of if and while: comparisons joined by && and ||, with ! and parentheses
+    //&& binds tighter than ||, the right side is only evaluated when the left side does not decide the result
+    private SwiftNodes.ConditionNode compileCondition() {
+        SwiftNodes.ConditionNode result = compileAndCondition();
+        while (check("OPERATOR", "||")) {
+            Token operatorToken = expect("OPERATOR");
+            result = new SwiftNodes.OrNode(operatorToken, result, compileAndCondition());
+        }
+        return result;
+    }
+
+    //compiles comparisons joined by &&
+    private SwiftNodes.ConditionNode compileAndCondition() {
+        SwiftNodes.ConditionNode result = compileNotCondition();
+        while (check("OPERATOR", "&&")) {
+            Token operatorToken = expect("OPERATOR");
+            result = new SwiftNodes.AndNode(operatorToken, result, compileNotCondition());
+        }
+        return result;
+    }
+
+    //compiles !condition, (condition) and single comparisons
+    private SwiftNodes.ConditionNode compileNotCondition() {
+        if (check("OPERATOR", "!")) {
+            Token notToken = expect("OPERATOR");
+            return new SwiftNodes.NotNode(notToken, compileNotCondition());
+        }
+        if (check("PUNCTUATION", "(") && isParenthesizedCondition()) {
+            expect("PUNCTUATION", "(");
+            SwiftNodes.ConditionNode condition = compileCondition();
+            expect("PUNCTUATION", ")");
+            return condition;
+        }
+        return compileComparison();
+    }
+
+    //checks if the ( at the current position groups a condition, like (a < b) && c > d,
+    //rather than an arithmetic expression, like (a + b) < c
+    private boolean isParenthesizedCondition() {
+        int depth = 0;
+        for (int i = pos; i < tokens.size(); i++) {
+            if (tokens.is(i, "PUNCTUATION", "(")) {
+                depth++;
+            } else if (tokens.is(i, "PUNCTUATION", ")")) {
+                if (--depth == 0) {
+                    return false;
+                }
+            } else if (depth == 1 && tokens.type(i).equals("OPERATOR")
+                    && (isComparisonOperator(tokens.value(i)) || isLogicalOperator(tokens.value(i)))) {
+                return true;
+            } else if (tokens.is(i, "PUNCTUATION", "{")) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    //compiles a single comparison, left op right
+    private SwiftNodes.ConditionNode compileComparison() {
+        SwiftNodes.ExpressionNode left = compileExpression();
+        Token operatorToken = expect("OPERATOR");
+        if (!isComparisonOperator(operatorToken.value)) {
+            throw SwiftNodes.error("Unknown comparison operator: %s", operatorToken, operatorToken.value);
+        }
+        SwiftNodes.ExpressionNode right = compileExpression();
+        return new SwiftNodes.CompareNode(operatorToken, left, right);
+    }
+
+    //compiles terms joined by arithmetic operators, evaluated from left to right
+    private SwiftNodes.ExpressionNode compileExpression() {
+        SwiftNodes.ExpressionNode result = compileTerm();
+        while (pos < tokens.size() && tokens.type(pos).equals("OPERATOR")) {
+            String operator = tokens.value(pos);
+            if (isComparisonOperator(operator) || isRangeOperator(operator) || isLogicalOperator(operator)) {
+                break;//comparison, range and logical operators are handled by the caller
+            }
+            if (!isArithmeticOperator(operator)) {
+                throw SwiftNodes.error("Unknown operator: %s", tokens.get(pos), operator);
+            }
+            result = new SwiftNodes.BinaryNode(tokens.get(pos++), result, compileTerm());
+        }
+        return result;
+    }
+
+    //compiles a single value
+    private SwiftNodes.ExpressionNode compileTerm() {
+        if (pos >= tokens.size()) {
+            throw SwiftNodes.error("Unexpected end of input", tokens.get(pos - 1));
+        }
+        Token token = tokens.get(pos++);
+        if (token.type.equals("OPERATOR") && token.value.equals("-")) {
+            return new SwiftNodes.NegateNode(token, compileTerm());//-x
+        }
+        if (token.type.equals("PUNCTUATION") && token.value.equals("[")) {
+            return compileArrayLiteral(token);//[1, 2, 3]
+        }
+        if (token.type.equals("PUNCTUATION") && token.value.equals("(")) {
+            SwiftNodes.ExpressionNode value = compileExpression();//(expression)
+            expect("PUNCTUATION", ")");
+            return value;
+        }
+        switch (token.type) {
+            case "INTEGER":
+                try {
+                    return new SwiftNodes.LongLiteralNode(token, Long.parseLong(token.value));
+                } catch (NumberFormatException e) {
+                    throw SwiftNodes.error("Invalid integer: %s", token, token.value);
+                }
+            case "FLOAT":
+                return new SwiftNodes.DoubleLiteralNode(token, Double.parseDouble(token.value));
+            case "STRING":
+                return new SwiftNodes.StringLiteralNode(token, token.value);
+            case "IDENTIFIER":
+                return compileIdentifier(token);
+            default:
+                throw SwiftNodes.error("Unexpected token type: %s", token, token.type);
+        }
+    }
+
+    //compiles a variable read, a[i], a.count or Array(repeating: value, count: n)
+    private SwiftNodes.ExpressionNode compileIdentifier(Token token) {
+        if (token.value.equals("Array") && check("PUNCTUATION", "(")) {
+            expect("PUNCTUATION", "(");
+            expect("IDENTIFIER", "repeating");
+            expect("PUNCTUATION", ":");
+            SwiftNodes.ExpressionNode value = compileExpression();
+            expect("PUNCTUATION", ",");
+            expect("IDENTIFIER", "count");
+            expect("PUNCTUATION", ":");
+            SwiftNodes.ExpressionNode count = compileExpression();
+            expect("PUNCTUATION", ")");
+            return new SwiftNodes.RepeatingArrayNode(token, value, count);
+        }
+        if (check("PUNCTUATION", "[")) {
+            SwiftNodes.ReadVariableNode array = arrayVariable(token);
+            Token bracketToken = expect("PUNCTUATION", "[");
+            SwiftNodes.ExpressionNode index = compileExpression();
+            expect("PUNCTUATION", "]");
+            return new SwiftNodes.IndexNode(bracketToken, array, index, !isUnchecked(array, index));
+        }
+        if (check("PUNCTUATION", ".")) {
+            SwiftNodes.ReadVariableNode array = arrayVariable(token);
+            expect("PUNCTUATION", ".");
+            expect("IDENTIFIER", "count");//count is the only supported array property
+            return new SwiftNodes.CountNode(token, array);
+        }
+        Integer slot = lookup(token.value);
+        if (slot == null) {//reads of undeclared variables fail when they are executed
+            return new SwiftNodes.UndefinedVariableNode(token, token.value);
+        }
+        return new SwiftNodes.ReadVariableNode(token, slot, token.value);
+    }
+
+    //compiles an array literal, the opening [ is already consumed
+    private SwiftNodes.ExpressionNode compileArrayLiteral(Token openToken) {
+        List<SwiftNodes.ExpressionNode> elements = new ArrayList<>();
+        if (!check("PUNCTUATION", "]")) {
+            elements.add(compileExpression());
+            while (check("PUNCTUATION", ",")) {
+                pos++;
+                elements.add(compileExpression());
+            }
+        }
+        expect("PUNCTUATION", "]");
+        return new SwiftNodes.ArrayLiteralNode(openToken, elements.toArray(new SwiftNodes.ExpressionNode[0]));
+    }
+
+    //checks if a[i] is inside a loop that checks its range against the array before it starts
+    private boolean isUnchecked(SwiftNodes.ReadVariableNode array, SwiftNodes.ExpressionNode index) {
+        if (!(index instanceof SwiftNodes.ReadVariableNode)) {
+            return false;
+        }
+        int indexSlot = ((SwiftNodes.ReadVariableNode) index).slot;
+        for (int[] context : uncheckedArrays) {
+            if (context[0] != indexSlot) {
+                continue;
+            }
+            for (int i = 1; i < context.length; i++) {
+                if (context[i] == array.slot) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //resolves the variable of a[i], a.count and a.append, it has to be declared
+    private SwiftNodes.ReadVariableNode arrayVariable(Token nameToken) {
+        Integer slot = lookup(nameToken.value);
+        if (slot == null) {
+            throw SwiftNodes.error("Undefined variable: %s", nameToken, nameToken.value);
+        }
+        return new SwiftNodes.ReadVariableNode(nameToken, slot, nameToken.value);
+    }
+
+    //allocates a slot for a new variable in the current scope
+    private int declare(String name) {
+        int slot = slotCount++;
+        scopes.peek().put(name, slot);
+        return slot;
+    }
+
+    //finds the slot of a variable, searching from the innermost scope outwards
+    private Integer lookup(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Integer slot = scopes.get(i).get(name);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    //helper function to check if it is comparison operaator
+    private static boolean isComparisonOperator(String operator) {
+        return operator.equals("<") || operator.equals(">") ||
+                operator.equals("<=") || operator.equals(">=") ||
+                operator.equals("==") || operator.equals("!=");
+    }
+
+    //helper function to check if it is a logical operator of a condition
+    private static boolean isLogicalOperator(String operator) {
+        return operator.equals("&&") || operator.equals("||");
+    }
+
+    //helper function to check if it is a range operator of a for loop
+    private static boolean isRangeOperator(String operator) {
+        return operator.equals("...") || operator.equals("..<");
+    }
+
+    //helper function to check if it is an arithmetic operator
+    private static boolean isArithmeticOperator(String operator) {
+        return operator.equals("+") || operator.equals("-") || operator.equals("*") ||
+                operator.equals("/") || operator.equals("%");
+    }
+
+    //helper function to check if it is a compound assignment operator
+    private static boolean isCompoundOperator(String operator) {
+        return operator.equals("+=") || operator.equals("-=") || operator.equals("*=") ||
+                operator.equals("/=") || operator.equals("++") || operator.equals("--");
+    }
+
+    //checks if the current token matches the type and value, without consuming it
+    private boolean check(String type, String value) {
+        return tokens.is(pos, type, value);
+    }
+
+    //checks that the current token matches the expected type
+    private Token expect(String type) {
+        if (pos >= tokens.size()) {
+            throw SwiftNodes.error("Unexpected end of input", tokens.get(pos - 1));
+        }
+        if (!tokens.type(pos).equals(type)) {
+            throw SwiftNodes.error("Expected %s but found %s", tokens.get(pos), type, tokens.type(pos));
+        }
+        return tokens.get(pos++);
+    }
+
+    //checks the type of the token and also its value
+    private Token expect(String type, String value) {
+        Token token = expect(type);
+        if (!token.value.equals(value)) {
+            throw SwiftNodes.error("Expected %s but found %s", token, value, token.value);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,1538 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// This class contains the nodes of the execution tree that SwiftCompiler builds from the tokens.
+// Expression nodes specialize themselves: on the first execution they look at the types of their
+// operands and switch to a state with a type-specific fast path (long-long add, double compare, ...).
+// When a fast path sees a value of another type, the node deoptimizes to the generic state for good.
+final class SwiftNodes {
+    static final int NORMAL = 0;   // Statement completed normally.
+    static final int BREAK = 1;    // Statement executed break, the innermost loop has to exit.
+    static final int CONTINUE = 2; // Statement executed continue, the innermost loop has to start the next iteration.
+
+    static final int MAX_ITERATIONS = 10000; // Upper bound for while loops, to avoid endless loops.
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private SwiftNodes() {
+    }
+
+    // Specialization states shared by the expression nodes.
+    static final int UNINITIALIZED = 0; // Not executed yet, types are unknown.
+    static final int LONG = 1;          // Operands were longs.
+    static final int DOUBLE = 2;        // Operands were doubles.
+    static final int STRING = 3;        // At least one operand was a string.
+    static final int GENERIC = 4;       // Types changed or mixed, every execution checks types.
+
+    // Thrown by a typed execute method when the value does not have the expected type.
+    // It carries the value, so nothing is evaluated twice. Stack traces are not needed, so they are not captured.
+    static final class UnexpectedResultException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final Object result;
+
+        UnexpectedResultException(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+    // Creates an interpreter exception at the position of a token, the message is formatted when it is read.
+    static ScriptError error(String format, Token token, Object... arguments) {
+        return new ScriptError(new Diagnostic(format, token, arguments));
+    }
+
+    // Error of a script found by the compiler or the nodes, always created by error().
+    // The compiler and the libraries catch it by this name instead of SwiftInterpreter's.
+    static final class ScriptError extends SwiftInterpreter.SwiftInterpreterException {
+        private static final long serialVersionUID = 1L;
+
+        ScriptError(Diagnostic diagnostic) {
+            super(diagnostic);
+        }
+    }
+
+    // Base class of all nodes, the token is used for error positions.
+    abstract static class Node {
+        final Token token;
+
+        Node(Token token) {
+            this.token = token;
+        }
+
+        // Returns the child nodes, used by analyses that walk the tree.
+        Node[] children() {
+            return NO_CHILDREN;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Expressions
+    // ---------------------------------------------------------------------------------------------
+
+    // Base class of nodes that produce a value.
+    abstract static class ExpressionNode extends Node {
+        ExpressionNode(Token token) {
+            super(token);
+        }
+
+        // Returns the value as an object.
+        abstract Object execute(Frame frame);
+
+        // Returns the value as a long, or throws if it is not a long.
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            Object value = execute(frame);
+            if (value instanceof Long) {
+                return (Long) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        // Returns the value as a double, or throws if it is not a double.
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            Object value = execute(frame);
+            if (value instanceof Double) {
+                return (Double) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+    }
+
+    // Integer literal, the boxed value is created once.
+    static final class LongLiteralNode extends ExpressionNode {
+        final long value;
+        private final Long boxed;
+
+        LongLiteralNode(Token token, long value) {
+            super(token);
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            frame.countExpression();
+            return boxed;
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            frame.countExpression();
+            return value;
+        }
+    }
+
+    // Floating point literal.
+    static final class DoubleLiteralNode extends ExpressionNode {
+        final double value;
+        private final Double boxed;
+
+        DoubleLiteralNode(Token token, double value) {
+            super(token);
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            frame.countExpression();
+            return boxed;
+        }
+
+        @Override
+        double executeDouble(Frame frame) {
+            frame.countExpression();
+            return value;
+        }
+    }
+
+    // String literal, the text was interned by the tokenizer.
+    static final class StringLiteralNode extends ExpressionNode {
+        final String value;
+
+        StringLiteralNode(Token token, String value) {
+            super(token);
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            frame.countExpression();
+            return value;
+        }
+    }
+
+    // Reads a variable from its slot, typed reads do not box.
+    static final class ReadVariableNode extends ExpressionNode {
+        final int slot;
+        final String name;
+
+        ReadVariableNode(Token token, int slot, String name) {
+            super(token);
+            this.slot = slot;
+            this.name = name;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            frame.countExpression();
+            if (frame.kinds[slot] == Frame.LONG || frame.kinds[slot] == Frame.DOUBLE) {
+                frame.countAllocation(); // The value is boxed.
+            }
+            Object value = frame.get(slot);
+            if (value == null) {
+                throw error("Undefined variable: %s", token, name);
+            }
+            return value;
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            if (frame.kinds[slot] == Frame.LONG) {
+                frame.countExpression();
+                return frame.primitives[slot];
+            }
+            throw new UnexpectedResultException(execute(frame));
+        }
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            if (frame.kinds[slot] == Frame.DOUBLE) {
+                frame.countExpression();
+                return Double.longBitsToDouble(frame.primitives[slot]);
+            }
+            throw new UnexpectedResultException(execute(frame));
+        }
+    }
+
+    // Reads a variable that is not declared in any enclosing scope, fails when executed.
+    static final class UndefinedVariableNode extends ExpressionNode {
+        final String name;
+
+        UndefinedVariableNode(Token token, String name) {
+            super(token);
+            this.name = name;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            throw error("Undefined variable: %s", token, name);
+        }
+    }
+
+    // Arithmetic operator +, -, *, / or %. Operators are evaluated from left to right.
+    static final class BinaryNode extends ExpressionNode {
+        final char operator;
+        final ExpressionNode left;
+        final ExpressionNode right;
+        int state = UNINITIALIZED;
+
+        BinaryNode(Token token, ExpressionNode left, ExpressionNode right) {
+            super(token);
+            this.operator = token.value.charAt(0);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{left, right};
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            switch (state) {
+                case LONG:
+                    try {
+                        long result = executeLong(frame);
+                        frame.countAllocation(); // The result is boxed.
+                        return result;
+                    } catch (UnexpectedResultException e) {
+                        return e.result; // Deoptimized, the generic result was computed already.
+                    }
+                case DOUBLE:
+                    try {
+                        double result = executeDouble(frame);
+                        frame.countAllocation();
+                        return result;
+                    } catch (UnexpectedResultException e) {
+                        return e.result;
+                    }
+                case STRING: {
+                    Object leftValue = left.execute(frame);
+                    Object rightValue = right.execute(frame);
+                    if (leftValue instanceof CharSequence || rightValue instanceof CharSequence) {
+                        frame.countExpression();
+                        frame.countAllocation();
+                        return SwiftString.concat(leftValue, rightValue);
+                    }
+                    return deoptimize(leftValue, rightValue, frame);
+                }
+                case GENERIC:
+                    return generic(left.execute(frame), right.execute(frame), frame);
+                default:
+                    return specialize(left.execute(frame), right.execute(frame), frame);
+            }
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            if (state != LONG) {
+                return super.executeLong(frame);
+            }
+            long leftValue;
+            try {
+                leftValue = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(e.result, right.execute(frame), frame));
+            }
+            long rightValue;
+            try {
+                rightValue = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                frame.countAllocation(); // The left value is boxed.
+                throw new UnexpectedResultException(deoptimize(leftValue, e.result, frame));
+            }
+            frame.countExpression();
+            return applyLong(leftValue, operator, rightValue, token);
+        }
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            if (state != DOUBLE) {
+                return super.executeDouble(frame);
+            }
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(e.result, right.execute(frame), frame));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                frame.countAllocation();
+                throw new UnexpectedResultException(deoptimize(leftValue, e.result, frame));
+            }
+            frame.countExpression();
+            return applyDouble(leftValue, operator, rightValue, token);
+        }
+
+        // First execution: picks the state from the operand types.
+        private Object specialize(Object leftValue, Object rightValue, Frame frame) {
+            if (leftValue instanceof Long && rightValue instanceof Long) {
+                state = LONG;
+            } else if (leftValue instanceof Double && rightValue instanceof Double) {
+                state = DOUBLE;
+            } else if (operator == '+' && (leftValue instanceof CharSequence || rightValue instanceof CharSequence)) {
+                state = STRING;
+            } else {
+                state = GENERIC;
+            }
+            return generic(leftValue, rightValue, frame);
+        }
+
+        // Types changed: falls back to the generic state and computes the result generically.
+        private Object deoptimize(Object leftValue, Object rightValue, Frame frame) {
+            state = GENERIC;
+            return generic(leftValue, rightValue, frame);
+        }
+
+        // Computes the result of boxed operands, the result is a new object.
+        private Object generic(Object leftValue, Object rightValue, Frame frame) {
+            frame.countExpression();
+            frame.countAllocation();
+            return applyOperator(leftValue, operator, rightValue, token);
+        }
+    }
+
+    // Unary minus.
+    static final class NegateNode extends ExpressionNode {
+        final ExpressionNode operand;
+
+        NegateNode(Token token, ExpressionNode operand) {
+            super(token);
+            this.operand = operand;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{operand};
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object value = operand.execute(frame);
+            frame.countExpression();
+            frame.countAllocation(); // The result is boxed.
+            if (value instanceof Long) {
+                return -(Long) value;
+            }
+            if (value instanceof Double) {
+                return -(Double) value;
+            }
+            throw error("Invalid operand for operator -", token);
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            long value;
+            try {
+                value = operand.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                frame.countExpression();
+                if (e.result instanceof Long) {
+                    return -(Long) e.result;
+                }
+                frame.countAllocation();
+                throw new UnexpectedResultException(execute(e.result));
+            }
+            frame.countExpression();
+            return -value;
+        }
+
+        // Negates a value that was already evaluated.
+        private Object execute(Object value) {
+            if (value instanceof Long) {
+                return -(Long) value;
+            }
+            if (value instanceof Double) {
+                return -(Double) value;
+            }
+            throw error("Invalid operand for operator -", token);
+        }
+    }
+
+    // Array literal like [1, 2, 3].
+    static final class ArrayLiteralNode extends ExpressionNode {
+        final ExpressionNode[] elements;
+
+        ArrayLiteralNode(Token token, ExpressionNode[] elements) {
+            super(token);
+            this.elements = elements;
+        }
+
+        @Override
+        Node[] children() {
+            return elements;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            List<Object> values = new ArrayList<>(elements.length);
+            for (ExpressionNode element : elements) {
+                values.add(element.execute(frame));
+            }
+            frame.countExpression();
+            frame.countAllocation();
+            return SwiftArray.of(values);
+        }
+    }
+
+    // Array(repeating: value, count: n).
+    static final class RepeatingArrayNode extends ExpressionNode {
+        final ExpressionNode value;
+        final ExpressionNode count;
+
+        RepeatingArrayNode(Token token, ExpressionNode value, ExpressionNode count) {
+            super(token);
+            this.value = value;
+            this.count = count;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{value, count};
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object element = value.execute(frame);
+            Object size = count.execute(frame);
+            frame.countExpression();
+            frame.countAllocation();
+            if (!(size instanceof Long) || (Long) size < 0 || (Long) size > Integer.MAX_VALUE) {
+                throw error("Invalid array count: %s", token, size);
+            }
+            return SwiftArray.repeating(element, (int) (long) (Long) size);
+        }
+    }
+
+    // Reads one array element, a[i]. Reads from long storage do not box.
+    // Inside a counted loop whose range was checked against the array size, checked is false.
+    static final class IndexNode extends ExpressionNode {
+        final ReadVariableNode array;
+        final ExpressionNode index;
+        final boolean checked;
+
+        IndexNode(Token token, ReadVariableNode array, ExpressionNode index, boolean checked) {
+            super(token);
+            this.array = array;
+            this.index = index;
+            this.checked = checked;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{array, index};
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            int position = checkedIndex(values, frame);
+            frame.countExpression();
+            if (values.kind() == SwiftArray.LONG || values.kind() == SwiftArray.DOUBLE) {
+                frame.countAllocation(); // The element is boxed.
+            }
+            return values.get(position);
+        }
+
+        @Override
+        long executeLong(Frame frame) throws UnexpectedResultException {
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            int position = checkedIndex(values, frame);
+            frame.countExpression();
+            if (values.kind() == SwiftArray.LONG) {
+                return values.getLong(position);
+            }
+            Object value = values.get(position);
+            if (value instanceof Long) { // Integer element of a mixed array.
+                return (Long) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        @Override
+        double executeDouble(Frame frame) throws UnexpectedResultException {
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            int position = checkedIndex(values, frame);
+            frame.countExpression();
+            if (values.kind() == SwiftArray.DOUBLE) {
+                return values.getDouble(position);
+            }
+            Object value = values.get(position);
+            if (value instanceof Double) { // Floating point element of a mixed array.
+                return (Double) value;
+            }
+            throw new UnexpectedResultException(value);
+        }
+
+        // Evaluates the index and checks it against the array bounds, unless the enclosing loop did it.
+        private int checkedIndex(SwiftArray values, Frame frame) {
+            long position;
+            try {
+                position = index.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                if (!(e.result instanceof Long)) { // An integer that was not computed on the fast path is accepted.
+                    throw error("Array index must be an integer: %s", token, e.result);
+                }
+                position = (Long) e.result;
+            }
+            if (checked && (position < 0 || position >= values.size())) {
+                throw error("Array index out of range: %s", token, position);
+            }
+            return (int) position;
+        }
+    }
+
+    // Reads the number of elements, a.count.
+    static final class CountNode extends ExpressionNode {
+        final ReadVariableNode array;
+
+        CountNode(Token token, ReadVariableNode array) {
+            super(token);
+            this.array = array;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{array};
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            frame.countExpression();
+            frame.countAllocation(); // The count is boxed.
+            return (long) values.size();
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            frame.countExpression();
+            return values.size();
+        }
+    }
+
+    // Makes sure a value is an array, otherwise throws an exception.
+    static SwiftArray arrayValue(Object value, ReadVariableNode variable) {
+        if (!(value instanceof SwiftArray)) {
+            throw error("Variable is not an array: %s", variable.token, variable.name);
+        }
+        return (SwiftArray) value;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Conditions
+    // ---------------------------------------------------------------------------------------------
+
+    // Base class of nodes that produce true or false.
+    abstract static class ConditionNode extends Node {
+        ConditionNode(Token token) {
+            super(token);
+        }
+
+        abstract boolean executeBoolean(Frame frame);
+    }
+
+    // Comparison left op right, with op one of <, >, <=, >=, ==, !=.
+    static final class CompareNode extends ConditionNode {
+        final String operator;
+        final ExpressionNode left;
+        final ExpressionNode right;
+        int state = UNINITIALIZED;
+
+        CompareNode(Token token, ExpressionNode left, ExpressionNode right) {
+            super(token);
+            this.operator = token.value;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{left, right};
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            frame.countExpression();
+            switch (state) {
+                case LONG: {
+                    long leftValue;
+                    try {
+                        leftValue = left.executeLong(frame);
+                    } catch (UnexpectedResultException e) {
+                        return deoptimize(e.result, right.execute(frame));
+                    }
+                    long rightValue;
+                    try {
+                        rightValue = right.executeLong(frame);
+                    } catch (UnexpectedResultException e) {
+                        return deoptimize(leftValue, e.result);
+                    }
+                    return compareLong(leftValue, operator, rightValue, token);
+                }
+                case DOUBLE: {
+                    double leftValue;
+                    try {
+                        leftValue = left.executeDouble(frame);
+                    } catch (UnexpectedResultException e) {
+                        return deoptimize(e.result, right.execute(frame));
+                    }
+                    double rightValue;
+                    try {
+                        rightValue = right.executeDouble(frame);
+                    } catch (UnexpectedResultException e) {
+                        return deoptimize(leftValue, e.result);
+                    }
+                    return compareDouble(leftValue, operator, rightValue, token);
+                }
+                case GENERIC:
+                case STRING:
+                    return compareValues(left.execute(frame), operator, right.execute(frame), token);
+                default:
+                    return specialize(left.execute(frame), right.execute(frame));
+            }
+        }
+
+        // First execution: picks the state from the operand types.
+        private boolean specialize(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Long && rightValue instanceof Long) {
+                state = LONG;
+            } else if (leftValue instanceof Double && rightValue instanceof Double) {
+                state = DOUBLE;
+            } else if (leftValue instanceof CharSequence && rightValue instanceof CharSequence) {
+                state = STRING;
+            } else {
+                state = GENERIC;
+            }
+            return compareValues(leftValue, operator, rightValue, token);
+        }
+
+        // Types changed: falls back to the generic state and compares generically.
+        private boolean deoptimize(Object leftValue, Object rightValue) {
+            state = GENERIC;
+            return compareValues(leftValue, operator, rightValue, token);
+        }
+    }
+
+    // left && right, right is only evaluated when left is true.
+    static final class AndNode extends ConditionNode {
+        final ConditionNode left;
+        final ConditionNode right;
+
+        AndNode(Token token, ConditionNode left, ConditionNode right) {
+            super(token);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{left, right};
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            frame.countExpression();
+            return left.executeBoolean(frame) && right.executeBoolean(frame);
+        }
+    }
+
+    // left || right, right is only evaluated when left is false.
+    static final class OrNode extends ConditionNode {
+        final ConditionNode left;
+        final ConditionNode right;
+
+        OrNode(Token token, ConditionNode left, ConditionNode right) {
+            super(token);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{left, right};
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            frame.countExpression();
+            return left.executeBoolean(frame) || right.executeBoolean(frame);
+        }
+    }
+
+    // !condition.
+    static final class NotNode extends ConditionNode {
+        final ConditionNode operand;
+
+        NotNode(Token token, ConditionNode operand) {
+            super(token);
+            this.operand = operand;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{operand};
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            frame.countExpression();
+            return !operand.executeBoolean(frame);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Statements
+    // ---------------------------------------------------------------------------------------------
+
+    // Base class of nodes that are executed for their effect.
+    // execute returns NORMAL, or BREAK/CONTINUE which every enclosing statement passes on to its loop.
+    abstract static class StatementNode extends Node {
+        StatementNode(Token token) {
+            super(token);
+        }
+
+        abstract int execute(Frame frame);
+    }
+
+    // Sequence of statements.
+    static final class BlockNode extends StatementNode {
+        final StatementNode[] statements;
+
+        BlockNode(Token token, StatementNode[] statements) {
+            super(token);
+            this.statements = statements;
+        }
+
+        @Override
+        Node[] children() {
+            return statements;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countScope();
+            for (StatementNode statement : statements) {
+                int completion = statement.execute(frame);
+                if (completion != NORMAL) {
+                    return completion; // break/continue leaves the rest of the block.
+                }
+            }
+            return NORMAL;
+        }
+    }
+
+    // Writes a variable, used for var/let declarations and for assignments.
+    // Longs and doubles are stored without boxing once the node has seen their type.
+    static final class WriteVariableNode extends StatementNode {
+        final int slot;
+        final String name;
+        final ExpressionNode value;
+        final boolean declaration;
+        int state = UNINITIALIZED;
+
+        WriteVariableNode(Token token, int slot, String name, ExpressionNode value, boolean declaration) {
+            super(token);
+            this.slot = slot;
+            this.name = name;
+            this.value = value;
+            this.declaration = declaration;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{value};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            switch (state) {
+                case LONG:
+                    try {
+                        frame.setLong(slot, value.executeLong(frame));
+                    } catch (UnexpectedResultException e) {
+                        state = GENERIC;
+                        frame.set(slot, e.result);
+                    }
+                    break;
+                case DOUBLE:
+                    try {
+                        frame.setDouble(slot, value.executeDouble(frame));
+                    } catch (UnexpectedResultException e) {
+                        state = GENERIC;
+                        frame.set(slot, e.result);
+                    }
+                    break;
+                case GENERIC:
+                    frame.set(slot, value.execute(frame));
+                    break;
+                default: {
+                    Object result = value.execute(frame);
+                    state = result instanceof Long ? LONG : result instanceof Double ? DOUBLE : GENERIC;
+                    frame.set(slot, result);
+                }
+            }
+            return NORMAL;
+        }
+    }
+
+    // Updates a variable in place: x += v, x -= v, x *= v, x /= v, and x++ / x-- with the value 1.
+    // The slot is read and written once; while both the variable and the value are longs (or both doubles)
+    // the new value is computed and stored without boxing.
+    static final class CompoundAssignNode extends StatementNode {
+        final int slot;
+        final String name;
+        final char operator; // Arithmetic operator applied to the old value and the value.
+        final ExpressionNode value;
+        int state = UNINITIALIZED;
+
+        CompoundAssignNode(Token token, int slot, String name, char operator, ExpressionNode value) {
+            super(token);
+            this.slot = slot;
+            this.name = name;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{value};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            switch (state) {
+                case LONG:
+                    if (frame.kinds[slot] != Frame.LONG) {
+                        state = GENERIC;
+                        executeGeneric(frame);
+                        break;
+                    }
+                    try {
+                        frame.primitives[slot] = applyLong(frame.primitives[slot], operator,
+                                value.executeLong(frame), token);
+                    } catch (UnexpectedResultException e) {
+                        state = GENERIC;
+                        frame.set(slot, applyOperator(frame.get(slot), operator, e.result, token));
+                    }
+                    break;
+                case DOUBLE:
+                    if (frame.kinds[slot] != Frame.DOUBLE) {
+                        state = GENERIC;
+                        executeGeneric(frame);
+                        break;
+                    }
+                    try {
+                        frame.primitives[slot] = Double.doubleToRawLongBits(applyDouble(
+                                Double.longBitsToDouble(frame.primitives[slot]), operator,
+                                value.executeDouble(frame), token));
+                    } catch (UnexpectedResultException e) {
+                        state = GENERIC;
+                        frame.set(slot, applyOperator(frame.get(slot), operator, e.result, token));
+                    }
+                    break;
+                case GENERIC:
+                    executeGeneric(frame);
+                    break;
+                default: {
+                    byte kind = frame.kinds[slot];
+                    Object right = executeGeneric(frame);
+                    state = kind == Frame.LONG && right instanceof Long ? LONG
+                            : kind == Frame.DOUBLE && right instanceof Double ? DOUBLE : GENERIC;
+                }
+            }
+            return NORMAL;
+        }
+
+        // Updates the variable with boxed values, returns the value that was applied.
+        private Object executeGeneric(Frame frame) {
+            Object current = frame.get(slot);
+            if (current == null) {
+                throw error("Undefined variable: %s", token, name);
+            }
+            Object right = value.execute(frame);
+            if (frame.kinds[slot] != Frame.OBJECT) {
+                frame.countAllocation(); // The current value was boxed.
+            }
+            frame.countAllocation();
+            frame.set(slot, applyOperator(current, operator, right, token));
+            return right;
+        }
+    }
+
+    // Assignment to a variable that is not declared in any enclosing scope, fails when executed.
+    static final class UndefinedAssignmentNode extends StatementNode {
+        final String name;
+
+        UndefinedAssignmentNode(Token token, String name) {
+            super(token);
+            this.name = name;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            throw error("Undefined variable: %s", token, name);
+        }
+    }
+
+    // Writes one array element, a[i] = value.
+    static final class WriteElementNode extends StatementNode {
+        final ReadVariableNode array;
+        final ExpressionNode index;
+        final ExpressionNode value;
+
+        WriteElementNode(Token token, ReadVariableNode array, ExpressionNode index, ExpressionNode value) {
+            super(token);
+            this.array = array;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{array, index, value};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            write(frame, null);
+            return NORMAL;
+        }
+
+        // Writes the element and reports it to the listener, if there is one.
+        void write(Frame frame, ExecutionListener listener) {
+            frame.countStatement();
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            Object position = index.execute(frame);
+            if (!(position instanceof Long)) {
+                throw error("Array index must be an integer: %s", token, position);
+            }
+            long checked = (Long) position;
+            if (checked < 0 || checked >= values.size()) {
+                throw error("Array index out of range: %s", token, checked);
+            }
+            values.set((int) checked, value.execute(frame));
+            if (listener != null) {
+                listener.elementWritten(token, array.name, checked, values.get((int) checked));
+            }
+        }
+    }
+
+    // Adds an element at the end of an array, a.append(value).
+    static final class AppendNode extends StatementNode {
+        final ReadVariableNode array;
+        final ExpressionNode value;
+
+        AppendNode(Token token, ReadVariableNode array, ExpressionNode value) {
+            super(token);
+            this.array = array;
+            this.value = value;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{array, value};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            append(frame, null);
+            return NORMAL;
+        }
+
+        // Appends the element and reports it to the listener, if there is one.
+        void append(Frame frame, ExecutionListener listener) {
+            frame.countStatement();
+            SwiftArray values = arrayValue(array.execute(frame), array);
+            values.append(value.execute(frame));
+            if (listener != null) {
+                int index = values.size() - 1;
+                listener.elementWritten(token, array.name, index, values.get(index));
+            }
+        }
+    }
+
+    // print(value).
+    static final class PrintNode extends StatementNode {
+        final ExpressionNode value;
+
+        PrintNode(Token token, ExpressionNode value) {
+            super(token);
+            this.value = value;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{value};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            print(frame);
+            return NORMAL;
+        }
+
+        // Prints the value and returns it.
+        Object print(Frame frame) {
+            frame.countStatement();
+            Object result = value.execute(frame);
+            frame.out.println(result);//output the value
+            return result;
+        }
+    }
+
+    // if/else. skipTrace holds the debug lines that are printed when the if block is skipped, it is empty without tracing.
+    static final class IfNode extends StatementNode {
+        final ConditionNode condition;
+        final StatementNode thenBlock;
+        final StatementNode elseBlock; // null when there is no else.
+
+        IfNode(Token token, ConditionNode condition, StatementNode thenBlock, StatementNode elseBlock) {
+            super(token);
+            this.condition = condition;
+            this.thenBlock = thenBlock;
+            this.elseBlock = elseBlock;
+        }
+
+        @Override
+        Node[] children() {
+            return elseBlock == null ? new Node[]{condition, thenBlock} : new Node[]{condition, thenBlock, elseBlock};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            if (condition.executeBoolean(frame)) {
+                return thenBlock.execute(frame);
+            }
+            return elseBlock == null ? NORMAL : elseBlock.execute(frame);
+        }
+    }
+
+    // while loop, limited to MAX_ITERATIONS iterations.
+    static final class WhileNode extends StatementNode {
+        final ConditionNode condition;
+        final StatementNode body;
+
+        WhileNode(Token token, ConditionNode condition, StatementNode body) {
+            super(token);
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{condition, body};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            ScriptEvents.Loop event = new ScriptEvents.Loop(); // Recorded by JFR above its threshold.
+            event.begin();
+            int iterationCount = 0;
+            while (condition.executeBoolean(frame)) {
+                if (++iterationCount > MAX_ITERATIONS) {
+                    throw error("Maximum loop iteration count exceeded", token);
+                }
+                frame.countIteration();
+                if (body.execute(frame) == BREAK) {
+                    break;
+                }
+            }
+            ScriptEvents.loopEnded(event, token, iterationCount);
+            return NORMAL;
+        }
+    }
+
+    // Counted loop over a range, for i in start...end or start..<end.
+    // The counter is a primitive long stored unboxed in its slot.
+    // uncheckedBody is a copy of the body without array bounds checks for the arrays in guardSlots;
+    // it is used when, before the first iteration, the whole range is inside all of those arrays.
+    static final class ForRangeNode extends StatementNode {
+        final int counterSlot;
+        final ExpressionNode start;
+        final ExpressionNode end;
+        final boolean inclusive;
+        final StatementNode body;
+        final StatementNode uncheckedBody; // null when no bounds check could be lifted.
+        final int[] guardSlots;
+
+        ForRangeNode(Token token, int counterSlot, ExpressionNode start, ExpressionNode end, boolean inclusive,
+                     StatementNode body, StatementNode uncheckedBody, int[] guardSlots) {
+            super(token);
+            this.counterSlot = counterSlot;
+            this.start = start;
+            this.end = end;
+            this.inclusive = inclusive;
+            this.body = body;
+            this.uncheckedBody = uncheckedBody;
+            this.guardSlots = guardSlots;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{start, end, body};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            long first = bound(start, frame);
+            long last = bound(end, frame);
+            boolean empty = inclusive ? first > last : first >= last;
+            if (!inclusive) {
+                last--; // Half-open range excludes the upper bound.
+            }
+            ScriptEvents.Loop event = new ScriptEvents.Loop(); // Recorded by JFR above its threshold.
+            event.begin();
+            long iterations = 0;
+            if (!empty) {
+                StatementNode loopBody = rangeInsideArrays(frame, first, last) ? uncheckedBody : body;
+                long counter = first;
+                while (true) {
+                    frame.setLong(counterSlot, counter);
+                    frame.countIteration();
+                    iterations++;
+                    // The loop ends at last instead of when the counter passes it, which would wrap around.
+                    if (loopBody.execute(frame) == BREAK || counter == last) {
+                        break;
+                    }
+                    counter++;
+                }
+            }
+            ScriptEvents.loopEnded(event, token, iterations);
+            return NORMAL;
+        }
+
+        // Checks once whether every index of the range is valid for all guarded arrays.
+        private boolean rangeInsideArrays(Frame frame, long first, long last) {
+            if (uncheckedBody == null || first < 0) {
+                return false;
+            }
+            for (int slot : guardSlots) {
+                Object value = frame.get(slot);
+                if (!(value instanceof SwiftArray) || last >= ((SwiftArray) value).size()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Evaluates a range bound, which has to be an integer.
+        private long bound(ExpressionNode node, Frame frame) {
+            try {
+                return node.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                if (e.result instanceof Long) { // An integer that was not computed on the fast path.
+                    return (Long) e.result;
+                }
+                throw error("Range bounds must be integers: %s", token, e.result);
+            }
+        }
+    }
+
+    // A loop that the compiler found to be a reduction over an integer range (see ParallelReduction).
+    // Large ranges run in parallel, everything else runs the loop itself.
+    static final class ReductionNode extends StatementNode {
+        final StatementNode loop;
+        final ParallelReduction reduction;
+
+        ReductionNode(StatementNode loop, ParallelReduction reduction) {
+            super(loop.token);
+            this.loop = loop;
+            this.reduction = reduction;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{loop};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            ScriptEvents.Loop event = new ScriptEvents.Loop(); // Recorded by JFR above its threshold.
+            event.begin();
+            long iterations = reduction.execute(frame);
+            if (iterations >= 0) {
+                ScriptEvents.loopEnded(event, token, iterations);
+                return NORMAL;
+            }
+            return loop.execute(frame); // Records its own event.
+        }
+    }
+
+    // Statement of a block while a ScriptProfiler is attached: publishes the statement's stack before it runs.
+    // The profiler puts these nodes into the statement arrays of the blocks and puts the original statements
+    // back when it detaches, so programs that are not profiled do not publish anything.
+    static final class SampledStatementNode extends StatementNode {
+        StatementNode statement; // Replaced by an InstrumentedNode while listeners are attached.
+        final ScriptProfiler profiler;
+        final String stack; // Collapsed stack of the statement, see ScriptProfiler.
+        final boolean topLevel; // Publishes that no statement runs once a top level statement is done.
+
+        SampledStatementNode(StatementNode statement, ScriptProfiler profiler, String stack, boolean topLevel) {
+            super(statement.token);
+            this.statement = statement;
+            this.profiler = profiler;
+            this.stack = stack;
+            this.topLevel = topLevel;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{statement};
+        }
+
+        @Override
+        int execute(Frame frame) {
+            profiler.publish(stack);
+            if (!topLevel) {
+                return statement.execute(frame);
+            }
+            try {
+                return statement.execute(frame);
+            } finally {
+                profiler.publish(null);
+            }
+        }
+    }
+
+    // Statement of a block while ExecutionListeners are attached (see Instrumentation).
+    // The instrumentation puts these nodes into the statement arrays of the blocks and puts the original
+    // statements back when the last listener detaches, so programs without listeners never call a listener.
+    // Every instrumented node tells the listener that its statement starts, then runs the statement.
+    abstract static class InstrumentedNode extends StatementNode {
+        final StatementNode original;
+        final ExecutionListener listener;
+
+        InstrumentedNode(StatementNode original, ExecutionListener listener) {
+            super(original.token);
+            this.original = original;
+            this.listener = listener;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{original};
+        }
+    }
+
+    // Instrumented statement without blocks, reports the writes and prints it does.
+    static final class InstrumentedStatementNode extends InstrumentedNode {
+        InstrumentedStatementNode(StatementNode original, ExecutionListener listener) {
+            super(original, listener);
+        }
+
+        @Override
+        int execute(Frame frame) {
+            listener.statementEntered(token);
+            if (original instanceof PrintNode) {
+                listener.printed(token, ((PrintNode) original).print(frame));
+                return NORMAL;
+            }
+            if (original instanceof WriteElementNode) {
+                ((WriteElementNode) original).write(frame, listener);
+                return NORMAL;
+            }
+            if (original instanceof AppendNode) {
+                ((AppendNode) original).append(frame, listener);
+                return NORMAL;
+            }
+            int completion = original.execute(frame);
+            if (original instanceof WriteVariableNode) {
+                WriteVariableNode write = (WriteVariableNode) original;
+                listener.variableWritten(token, write.name, frame.get(write.slot), write.declaration);
+            } else if (original instanceof CompoundAssignNode) {
+                CompoundAssignNode update = (CompoundAssignNode) original;
+                listener.variableWritten(token, update.name, frame.get(update.slot), false);
+            }
+            return completion;
+        }
+    }
+
+    // Instrumented if, reports the block that is skipped.
+    static final class InstrumentedIfNode extends InstrumentedNode {
+        final IfNode ifNode;
+
+        InstrumentedIfNode(IfNode ifNode, ExecutionListener listener) {
+            super(ifNode, listener);
+            this.ifNode = ifNode;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            listener.statementEntered(token);
+            frame.countStatement();
+            if (ifNode.condition.executeBoolean(frame)) {
+                if (ifNode.elseBlock != null) {
+                    listener.blockSkipped(ifNode.elseBlock.token, true);
+                }
+                return ifNode.thenBlock.execute(frame);
+            }
+            listener.blockSkipped(ifNode.thenBlock.token, false);
+            return ifNode.elseBlock == null ? NORMAL : ifNode.elseBlock.execute(frame);
+        }
+    }
+
+    // Instrumented while loop, reports every iteration.
+    static final class InstrumentedWhileNode extends InstrumentedNode {
+        final WhileNode loop;
+
+        InstrumentedWhileNode(WhileNode loop, ExecutionListener listener) {
+            super(loop, listener);
+            this.loop = loop;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            listener.statementEntered(token);
+            frame.countStatement();
+            ScriptEvents.Loop event = new ScriptEvents.Loop();
+            event.begin();
+            int iterationCount = 0;
+            while (loop.condition.executeBoolean(frame)) {
+                if (++iterationCount > MAX_ITERATIONS) {
+                    throw error("Maximum loop iteration count exceeded", token);
+                }
+                frame.countIteration();
+                listener.loopIteration(token, iterationCount);
+                if (loop.body.execute(frame) == BREAK) {
+                    break;
+                }
+            }
+            ScriptEvents.loopEnded(event, token, iterationCount);
+            return NORMAL;
+        }
+    }
+
+    // Instrumented for loop, reports every iteration. The body always checks array bounds.
+    static final class InstrumentedForRangeNode extends InstrumentedNode {
+        final ForRangeNode loop;
+
+        InstrumentedForRangeNode(ForRangeNode loop, ExecutionListener listener) {
+            super(loop, listener);
+            this.loop = loop;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            listener.statementEntered(token);
+            frame.countStatement();
+            long first = loop.bound(loop.start, frame);
+            long last = loop.bound(loop.end, frame);
+            boolean empty = loop.inclusive ? first > last : first >= last;
+            if (!loop.inclusive) {
+                last--; // Half-open range excludes the upper bound.
+            }
+            ScriptEvents.Loop event = new ScriptEvents.Loop();
+            event.begin();
+            long iterations = 0;
+            if (!empty) {
+                long counter = first;
+                while (true) {
+                    frame.setLong(loop.counterSlot, counter);
+                    frame.countIteration();
+                    listener.loopIteration(token, ++iterations);
+                    if (loop.body.execute(frame) == BREAK || counter == last) {
+                        break;
+                    }
+                    counter++;
+                }
+            }
+            ScriptEvents.loopEnded(event, token, iterations);
+            return NORMAL;
+        }
+    }
+
+    // break or continue, the target loop is the innermost one and was resolved by the compiler.
+    static final class JumpNode extends StatementNode {
+        final int completion;
+
+        JumpNode(Token token, int completion) {
+            super(token);
+            this.completion = completion;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            return completion;
+        }
+    }
+
+    // import name: loads the globals of a library into the slots the compiler declared for them.
+    // The library's tree is shared by all programs that import it, so it is not a child: analyses and
+    // instrumentation of the program never change it.
+    static final class ImportNode extends StatementNode {
+        final ScriptLibrary.Library library;
+        final int[] slots; // Slot of every global of the library, in the order of Library.names().
+
+        ImportNode(Token token, ScriptLibrary.Library library, int[] slots) {
+            super(token);
+            this.library = library;
+            this.slots = slots;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            frame.countStatement();
+            library.load(frame, slots);
+            return NORMAL;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Generic operations, used before a node specialized and after it deoptimized.
+    // ---------------------------------------------------------------------------------------------
+
+    // Applies an arithmetic operator to two values of any type.
+    static Object applyOperator(Object left, char operator, Object right, Token token) {
+        if (operator == '+' && (left instanceof CharSequence || right instanceof CharSequence)) {
+            return SwiftString.concat(left, right); // String concatenation, appends in place when possible.
+        }
+        if (!(left instanceof Number) || !(right instanceof Number)) {
+            throw error("Invalid operands for operator %s", token, operator);
+        }
+        if (left instanceof Double || right instanceof Double) {
+            return applyDouble(((Number) left).doubleValue(), operator, ((Number) right).doubleValue(), token);
+        }
+        return applyLong(((Number) left).longValue(), operator, ((Number) right).longValue(), token);
+    }
+
+    // Applies an arithmetic operator to two longs.
+    static long applyLong(long left, char operator, long right, Token token) {
+        return switch (operator) {
+            case '+' -> left + right;
+            case '-' -> left - right;
+            case '*' -> left * right;
+            case '/' -> {
+                if (right == 0) {
+                    throw error("Division by zero", token);
+                }
+                yield left / right;
+            }
+            case '%' -> {
+                if (right == 0) {
+                    throw error("Modulo by zero", token);
+                }
+                yield Math.floorMod(left, right);
+            }
+            default -> throw error("Unknown operator: %s", token, operator);
+        };
+    }
+
+    // Applies an arithmetic operator to two doubles.
+    static double applyDouble(double left, char operator, double right, Token token) {
+        return switch (operator) {
+            case '+' -> left + right;
+            case '-' -> left - right;
+            case '*' -> left * right;
+            case '/' -> left / right;
+            case '%' -> left % right;
+            default -> throw error("Unknown operator: %s", token, operator);
+        };
+    }
+
+    // Compares two values of any type.
+    static boolean compareValues(Object left, String operator, Object right, Token token) {
+        if (left instanceof CharSequence && right instanceof CharSequence) { // Strings are compared by characters.
+            int result = SwiftString.compare((CharSequence) left, (CharSequence) right);
+            return compareLong(result, operator, 0, token);
+        }
+        if (!(left instanceof Number) || !(right instanceof Number)) {
+            throw error("Invalid operands for operator %s", token, operator);
+        }
+        // Integers and floats that can be represented as integers are compared as integers.
+        boolean isIntegerComparison = (!(left instanceof Double) || ((Double) left) % 1 == 0)
+                && (!(right instanceof Double) || ((Double) right) % 1 == 0);
+        if (isIntegerComparison) {
+            return compareLong(((Number) left).longValue(), operator, ((Number) right).longValue(), token);
+        }
+        return compareDouble(((Number) left).doubleValue(), operator, ((Number) right).doubleValue(), token);
+    }
+
+    // Compares two longs.
+    static boolean compareLong(long left, String operator, long right, Token token) {
+        return switch (operator) {
+            case "<" -> left < right;
+            case ">" -> left > right;
+            case "<=" -> left <= right;
+            case ">=" -> left >= right;
+            case "==" -> left == right;
+            case "!=" -> left != right;
+            default -> throw error("Unknown comparison operator: %s", token, operator);
+        };
+    }
+
+    // Compares two doubles, equality allows a small difference.
+    static boolean compareDouble(double left, String operator, double right, Token token) {
+        return switch (operator) {
+            case "<" -> left < right;
+            case ">" -> left > right;
+            case "<=" -> left <= right;
+            case ">=" -> left >= right;
+            case "==" -> Math.abs(left - right) < 1e-10;
+            case "!=" -> Math.abs(left - right) >= 1e-10;
+            default -> throw error("Unknown comparison operator: %s", token, operator);
+        };
+    }
+}
@@ -0,0 +1,19 @@
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// This class is the result of compiling a token list: the execution tree and the slot layout it needs.
+class SwiftProgram {
+    private static final AtomicLong PROGRAMS = new AtomicLong(); // Programs created so far.
+
+    final long id = PROGRAMS.incrementAndGet(); // Number of the program in this JVM, for the JFR events.
+    final SwiftNodes.StatementNode body; // Root of the execution tree.
+    final int slotCount; // Number of frame slots used by the tree.
+    final Map<String, Integer> globalSlots; // Slot of every global variable, in declaration order.
+
+    // Constructor.
+    SwiftProgram(SwiftNodes.StatementNode body, int slotCount, Map<String, Integer> globalSlots) {
+        this.body = body;
+        this.slotCount = slotCount;
+        this.globalSlots = globalSlots;
+    }
+}
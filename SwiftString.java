@@ -0,0 +1,71 @@
+// This class represents a string value built by concatenation.
+// Several values can share one StringBuilder, each of them sees the first `length` characters.
+// Appending to the value that ends at the end of the builder appends in place, so building
+// a string with repeated s = s + x in a loop takes linear time instead of copying on every step.
+class SwiftString implements CharSequence {
+    private final StringBuilder buffer; // Shared characters, this value is a prefix of them.
+    private final int length; // Number of characters of the buffer that belong to this value.
+    private String flat; // Cached String form, created on the first toString().
+
+    // Constructor: creates a value that is the first length characters of the buffer.
+    private SwiftString(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    // Concatenates two values, at least one of them is a string. Non string values are converted to text.
+    static SwiftString concat(Object left, Object right) {
+        CharSequence rightText = text(right);
+        if (left instanceof SwiftString) {
+            SwiftString leftString = (SwiftString) left;
+            synchronized (leftString.buffer) {
+                if (leftString.buffer.length() == leftString.length) {
+                    // Nobody appended after this value yet, so the shared buffer can be extended in place.
+                    leftString.buffer.append(rightText);
+                    return new SwiftString(leftString.buffer, leftString.buffer.length());
+                }
+            }
+        }
+        CharSequence leftText = text(left);
+        // Copies the left value into a new buffer with room to grow, later appends go in place.
+        StringBuilder buffer = new StringBuilder(Math.max(16, (leftText.length() + rightText.length()) * 2));
+        buffer.append(leftText).append(rightText);
+        return new SwiftString(buffer, buffer.length());
+    }
+
+    // Compares two string values by their characters.
+    static int compare(CharSequence left, CharSequence right) {
+        return left.toString().compareTo(right.toString());
+    }
+
+    // Returns the text of a value, strings are used as they are.
+    private static CharSequence text(Object value) {
+        return value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    // Returns the characters of this value as a String, created once and cached.
+    @Override
+    public String toString() {
+        if (flat == null) {
+            synchronized (buffer) {
+                flat = buffer.substring(0, length);
+            }
+        }
+        return flat;
+    }
+}
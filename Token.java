@@ -1,13 +1,15 @@
 
 // This class represents a lexical token with type, value and position in the source code.
+// The position is only the offset of the first character, line and column are looked up in the
+// line index of the source when they are needed.
 class Token {
     final String type; // Attribute, which represents the type of the token.
     final String value; // Attribute, which represents the value of the token.
-    final int line; // Attribute, which represents the line number in the source code where the token appears.
-    final int column; // Attribute, which represents the column number in the source code, where the token starts.
+    final int offset; // Attribute, which represents the index in the source code where the token starts.
+    final LineIndex lines; // Attribute, which represents the line starts of the source code, shared by its tokens.
 
     // Constructor.
-    Token(String type, String value, int line, int column) {
+    Token(String type, String value, int offset, LineIndex lines) {
 
         // Handling illegal argument exception.
         if (type == null || type.isEmpty()) {
@@ -16,17 +18,27 @@ class Token {
         if (value == null) {
             throw new IllegalArgumentException("Value cannot be null.");
         }
-        if (line < 0) {
-            throw new IllegalArgumentException("Line number must be non-negative.");
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be non-negative.");
         }
-        if (column < 0) {
-            throw new IllegalArgumentException("Column number must be non-negative.");
+        if (lines == null) {
+            throw new IllegalArgumentException("Line index cannot be null.");
         }
 
         this.type = type;
         this.value = value;
-        this.line = line;
-        this.column = column;
+        this.offset = offset;
+        this.lines = lines;
+    }
+
+    // This method returns the line number in the source code where the token appears.
+    int line() {
+        return lines.line(offset);
+    }
+
+    // This method returns the column number in the source code, where the token starts.
+    int column() {
+        return lines.column(offset);
     }
 
     // This method returns a string interpretation of the token object.
@@ -34,6 +46,6 @@ class Token {
     @Override
     public String toString() {
         return String.format("Token{type='%s', value='%s', position=(%d:%d)}",
-                type, value, line, column);
+                type, value, line(), column());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,311 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// This class stores a list of tokens column by column instead of as one object per token.
+// Every token is a kind, an offset, a length and a value in int arrays. The kind stands for the type and,
+// for keywords, operators, punctuation and EOF, also for the text: those kinds are fixed, their type and
+// text are shared by all buffers and the value column is not used. Identifiers, numbers and strings have
+// their text in a string pool of the buffer, so repeated names and literals are stored once.
+// The compiler reads the columns by index; get() creates a Token only where one is kept, e.g. in a node.
+// A token the columns cannot hold, one of another source or whose type and text have no kind (e.g. an unknown
+// operator), is kept as it is with the kind OTHER, so the compiler reports it like any other wrong token.
+final class TokenBuffer extends AbstractList<Token> implements RandomAccess {
+    // Fixed kinds: the type and the text of every token that has one, shared by all buffers.
+    private static final String[] FIXED = {
+            "EOF", "",
+            "KEYWORD", "var", "KEYWORD", "let", "KEYWORD", "if", "KEYWORD", "else", "KEYWORD", "while",
+            "KEYWORD", "for", "KEYWORD", "print", "KEYWORD", "function", "KEYWORD", "return",
+            "KEYWORD", "break", "KEYWORD", "continue", "KEYWORD", "import",
+            "OPERATOR", "+", "OPERATOR", "-", "OPERATOR", "*", "OPERATOR", "/", "OPERATOR", "%", "OPERATOR", "=",
+            "OPERATOR", "<", "OPERATOR", ">", "OPERATOR", "!", "OPERATOR", "&", "OPERATOR", "|", "OPERATOR", "^",
+            "OPERATOR", "~", "OPERATOR", "==", "OPERATOR", "!=", "OPERATOR", "<=", "OPERATOR", ">=",
+            "OPERATOR", "&&", "OPERATOR", "||", "OPERATOR", "++", "OPERATOR", "--", "OPERATOR", "+=",
+            "OPERATOR", "-=", "OPERATOR", "*=", "OPERATOR", "/=", "OPERATOR", "...", "OPERATOR", "..<",
+            "PUNCTUATION", "(", "PUNCTUATION", ")", "PUNCTUATION", "{", "PUNCTUATION", "}", "PUNCTUATION", "[",
+            "PUNCTUATION", "]", "PUNCTUATION", ";", "PUNCTUATION", ",", "PUNCTUATION", ".", "PUNCTUATION", ":"
+    };
+    // Types whose text is in the pool, they are the kinds after the fixed ones.
+    private static final String[] POOLED = {"IDENTIFIER", "INTEGER", "FLOAT", "STRING"};
+    static final int IDENTIFIER = FIXED.length / 2;
+    static final int INTEGER = IDENTIFIER + 1;
+    static final int FLOAT = IDENTIFIER + 2;
+    static final int STRING = IDENTIFIER + 3;
+    static final int OTHER = IDENTIFIER + 4; // Kind of a token kept as an object, see others.
+
+    private static final String[] TYPES; // Type of every kind.
+    private static final String[] VALUES; // Text of every fixed kind, null for pooled kinds.
+    private static final Map<String, Integer> KINDS = new HashMap<>(); // Type, or type and text, to kind.
+
+    static {
+        int fixedCount = FIXED.length / 2;
+        TYPES = new String[fixedCount + POOLED.length + 1]; // The type and text of OTHER are in its token.
+        VALUES = new String[TYPES.length];
+        for (int kind = 0; kind < fixedCount; kind++) {
+            TYPES[kind] = FIXED[2 * kind].intern();
+            VALUES[kind] = FIXED[2 * kind + 1].intern();
+            KINDS.put(key(TYPES[kind], VALUES[kind]), kind);
+        }
+        for (int i = 0; i < POOLED.length; i++) {
+            TYPES[fixedCount + i] = POOLED[i].intern();
+            KINDS.put(POOLED[i], fixedCount + i);
+        }
+    }
+
+    private final LineIndex lines; // Line starts of the source, shared by all tokens.
+    private int size;
+    private int[] kinds = new int[64];
+    private int[] offsets = new int[64]; // Offset of the first character of every token in the source.
+    private int[] lengths = new int[64]; // Number of source characters of every token.
+    private int[] values = new int[64]; // Index of the text in the pool, only for pooled kinds.
+    private String[] pool = new String[16];
+    private int poolSize;
+    private int[] poolTable = new int[32]; // Open addressing hash table of pool index + 1, 0 for a free slot.
+    private Map<Integer, Token> others; // Tokens of the kind OTHER by index, null until one is added.
+
+    // Constructor: an empty buffer for the tokens of a source with the given line starts.
+    TokenBuffer(LineIndex lines) {
+        this.lines = lines;
+    }
+
+    // Returns the tokens as a buffer: a buffer is returned as it is, other lists are copied.
+    static TokenBuffer of(List<Token> tokens) {
+        if (tokens instanceof TokenBuffer) {
+            return (TokenBuffer) tokens;
+        }
+        TokenBuffer buffer = new TokenBuffer(tokens.isEmpty() ? LineIndex.of("") : tokens.get(0).lines);
+        buffer.addAll(tokens);
+        return buffer;
+    }
+
+    // Returns the kind of a token type and text, see the class comment.
+    static int kind(String type, String value) {
+        Integer kind = knownKind(type, value);
+        if (kind == null) {
+            throw new IllegalArgumentException("Unknown token: " + type + " " + value);
+        }
+        return kind;
+    }
+
+    // Returns the kind of a token type and text, or null if it has none.
+    private static Integer knownKind(String type, String value) {
+        Integer kind = KINDS.get(key(type, value));
+        return kind != null ? kind : KINDS.get(type);
+    }
+
+    // Returns the text of a fixed kind, the same String for all tokens of the kind.
+    static String fixedValue(int kind) {
+        return VALUES[kind];
+    }
+
+    // Adds a token. length is the number of source characters it covers.
+    void add(String type, String value, int offset, int length) {
+        int kind = kind(type, value);
+        add(kind, VALUES[kind] == null ? pooled(value, 0, value.length()) : -1, offset, length);
+    }
+
+    // Adds a token of a fixed kind.
+    void addFixed(int kind, int offset, int length) {
+        add(kind, -1, offset, length);
+    }
+
+    // Adds a token of a pooled kind whose text is source.substring(start, end), the token's offset is start.
+    // The substring is only created the first time the text is added to the pool.
+    void addSource(int kind, String source, int start, int end) {
+        add(kind, pooled(source, start, end), start, end - start);
+    }
+
+    // Adds a token of a pooled kind with its text.
+    void addPooled(int kind, String value, int offset, int length) {
+        add(kind, pooled(value, 0, value.length()), offset, length);
+    }
+
+    private void add(int kind, int value, int offset, int length) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be non-negative.");
+        }
+        if (size == kinds.length) {
+            int capacity = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        offsets[size] = offset;
+        lengths[size] = length;
+        values[size] = value;
+        size++;
+    }
+
+    // Shrinks the columns to the number of tokens, for buffers that are kept after they are filled.
+    void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        offsets = Arrays.copyOf(offsets, size);
+        lengths = Arrays.copyOf(lengths, size);
+        values = Arrays.copyOf(values, size);
+        pool = Arrays.copyOf(pool, poolSize);
+    }
+
+    // Adds a token, its length is the length of its text. A token of another source or without a kind is
+    // kept as it is, its line and column stay those of its own source.
+    @Override
+    public boolean add(Token token) {
+        Integer kind = token.lines == lines ? knownKind(token.type, token.value) : null;
+        if (kind == null) {
+            if (others == null) {
+                others = new HashMap<>();
+            }
+            others.put(size, token);
+            add(OTHER, -1, token.offset, token.value.length());
+        } else {
+            add(kind, VALUES[kind] == null ? pooled(token.value, 0, token.value.length()) : -1, token.offset,
+                    token.value.length());
+        }
+        return true;
+    }
+
+    // Adds the first count tokens of another buffer, with their offsets moved by shift.
+    void append(TokenBuffer other, int count, int shift) {
+        for (int i = 0; i < count; i++) {
+            int kind = other.kinds[i];
+            if (kind == OTHER) {
+                add(other.others.get(i)); // Kept with its own position.
+                continue;
+            }
+            String value = other.value(i);
+            add(kind, VALUES[kind] == null ? pooled(value, 0, value.length()) : -1, other.offsets[i] + shift,
+                    other.lengths[i]);
+        }
+    }
+
+    // Creates the token at an index.
+    @Override
+    public Token get(int index) {
+        if (kinds[checkIndex(index)] == OTHER) {
+            return others.get(index);
+        }
+        return new Token(type(index), value(index), offset(index), lines);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Returns the type of the token at an index, the strings are shared, so they can be compared cheaply.
+    String type(int index) {
+        int kind = kinds[checkIndex(index)];
+        return kind != OTHER ? TYPES[kind] : others.get(index).type;
+    }
+
+    // Returns the text of the token at an index.
+    String value(int index) {
+        int kind = kinds[checkIndex(index)];
+        if (kind == OTHER) {
+            return others.get(index).value;
+        }
+        return VALUES[kind] != null ? VALUES[kind] : pool[values[index]];
+    }
+
+    int offset(int index) {
+        return offsets[checkIndex(index)];
+    }
+
+    int length(int index) {
+        return lengths[checkIndex(index)];
+    }
+
+    // Returns the line of the token at an index, starting at 1.
+    int line(int index) {
+        if (kinds[checkIndex(index)] == OTHER) {
+            return others.get(index).line();
+        }
+        return lines.line(offsets[index]);
+    }
+
+    // Checks if the token at an index has the type and the text, false after the last token.
+    boolean is(int index, String type, String value) {
+        return index < size && type(index).equals(type) && value(index).equals(value);
+    }
+
+    // Returns the index of a token of this buffer: the token at the same offset with the same type and text.
+    @Override
+    public int indexOf(Object object) {
+        if (object instanceof Token) {
+            Token token = (Token) object;
+            for (int i = 0; i < size; i++) {
+                if (offsets[i] == token.offset && type(i).equals(token.type) && value(i).equals(token.value)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Returns the estimated memory used by the buffer in bytes: the columns and the pool.
+    long bytes() {
+        long bytes = 64 + 4L * (16 + 4L * kinds.length) + 2L * 16 + 4L * (pool.length + poolTable.length);
+        for (int i = 0; i < poolSize; i++) {
+            bytes += 40 + pool[i].length();
+        }
+        return bytes;
+    }
+
+    // Returns the index of text.substring(start, end) in the pool, adding it on first use.
+    private int pooled(String text, int start, int end) {
+        if (text == null) {
+            throw new IllegalArgumentException("Value cannot be null.");
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int mask = poolTable.length - 1;
+        int slot = hash & mask;
+        while (poolTable[slot] != 0) {
+            String pooled = pool[poolTable[slot] - 1];
+            if (pooled.length() == end - start && text.startsWith(pooled, start)) {
+                return poolTable[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (poolSize == pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(16, poolSize * 2));
+        }
+        pool[poolSize] = start == 0 && end == text.length() ? text : text.substring(start, end);
+        poolTable[slot] = ++poolSize;
+        if (poolSize * 2 > poolTable.length) {
+            rehash();
+        }
+        return poolSize - 1;
+    }
+
+    // Doubles the pool's hash table, the hash of a text is String.hashCode().
+    private void rehash() {
+        poolTable = new int[poolTable.length * 2];
+        int mask = poolTable.length - 1;
+        for (int i = 0; i < poolSize; i++) {
+            int slot = pool[i].hashCode() & mask;
+            while (poolTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            poolTable[slot] = i + 1;
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index;
+    }
+
+    // Returns the key of a fixed kind in KINDS.
+    private static String key(String type, String value) {
+        return type + ' ' + value;
+    }
+}
@@ -4,13 +4,14 @@ class Tokenizer {
 
     private final String input;  // The input string to be tokenized, stored as a final field since it won't change.
     private int pos;   //  Tracks the current position in the input string during tokenization.
-    private int line;   // Tracks the current line number in the input.
-    private int column;  // Tracks the current column number in the input.
+    private LineIndex lines; // Line starts of the input, tokens only store their offset and share it.
+    private List<Diagnostic> diagnostics; // Collects errors when tokenizing with recovery, null when the first error is thrown.
+    private final boolean tables; // Classifies ASCII characters with the tables below instead of the Character methods.
 
     // Set of predefined keywords in the language, stored in a HashSet for fast lookup.
     private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
             "var", "let", "if", "else", "while", "for", "print", "function",
-            "return", "break", "continue"
+            "return", "break", "continue", "import"
     ));
 
     // Map of multi-character operators to their corresponding symbolic names.
@@ -29,48 +30,245 @@ class Tokenizer {
         put("/=", "DIVIDE_EQUALS");
     }};
 
-    // Constructor: Initializes the tokenizer with the input string and sets position, line, and column.
+    // Classes of characters for the table-driven scanner, every ASCII character has one in CLASSES.
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte SLASH = 2; // Starts a comment or an operator.
+    private static final byte QUOTE = 3;
+    private static final byte DIGIT = 4;
+    private static final byte LETTER = 5; // Starts an identifier.
+    private static final byte DOT = 6; // Starts a range operator or is punctuation.
+    private static final byte OPERATOR = 7;
+    private static final byte PUNCTUATION = 8;
+
+    private static final byte[] CLASSES = new byte[128]; // Class of every ASCII character.
+    private static final boolean[] IDENTIFIER_PARTS = new boolean[128]; // ASCII characters that continue an identifier.
+    private static final int[] SINGLE_KINDS = new int[128]; // TokenBuffer kind of one-character operators and punctuation.
+    // Operator DFA: the first character selects a row, the second character leads to the kind of the two-character
+    // operator it completes, or to 0 when the operator is the first character alone. Rows of other characters are null.
+    private static final int[][] OPERATOR_PAIRS = new int[128][];
+    private static final int EOF = TokenBuffer.kind("EOF", "");
+
+    // Perfect hash of the keywords: (first character * KEYWORD_MULTIPLIER + length) & 31 is different for every
+    // keyword, so an identifier is a keyword only if it equals the one keyword in its slot.
+    // The multiplier is searched when the class is loaded, so the hash stays perfect when keywords are added.
+    private static final String[] KEYWORD_SLOTS = new String[32];
+    private static final int[] KEYWORD_KINDS = new int[32]; // TokenBuffer kind of the keyword in every slot.
+    private static final int KEYWORD_MULTIPLIER;
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            // The classes are taken from the checks of the character-by-character scanner, in the same order.
+            if (Character.isWhitespace(c)) {
+                CLASSES[c] = WHITESPACE;
+            } else if (c == '/') {
+                CLASSES[c] = SLASH;
+            } else if (c == '"' || c == '\'') {
+                CLASSES[c] = QUOTE;
+            } else if (Character.isDigit(c)) {
+                CLASSES[c] = DIGIT;
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                CLASSES[c] = LETTER;
+            } else if (c == '.') {
+                CLASSES[c] = DOT;
+            } else if ("+-*/%=<>!&|^~".indexOf(c) != -1) {
+                CLASSES[c] = OPERATOR;
+            } else if ("(){}[];,.:".indexOf(c) != -1) {
+                CLASSES[c] = PUNCTUATION;
+            }
+            IDENTIFIER_PARTS[c] = Character.isLetterOrDigit(c) || c == '_' || c == '$';
+            if (CLASSES[c] == SLASH || CLASSES[c] >= DOT) {
+                SINGLE_KINDS[c] = TokenBuffer.kind(CLASSES[c] == PUNCTUATION || c == '.' ? "PUNCTUATION" : "OPERATOR",
+                        String.valueOf(c));
+            }
+        }
+        for (String operator : OPERATORS.keySet()) {
+            char first = operator.charAt(0);
+            if (OPERATOR_PAIRS[first] == null) {
+                OPERATOR_PAIRS[first] = new int[128];
+            }
+            OPERATOR_PAIRS[first][operator.charAt(1)] = TokenBuffer.kind("OPERATOR", operator);
+        }
+        KEYWORD_MULTIPLIER = keywordMultiplier();
+        for (String keyword : KEYWORDS) {
+            int slot = keywordSlot(keyword.charAt(0), keyword.length(), KEYWORD_MULTIPLIER);
+            KEYWORD_SLOTS[slot] = keyword;
+            KEYWORD_KINDS[slot] = TokenBuffer.kind("KEYWORD", keyword);
+        }
+    }
+
+    // Constructor: Initializes the tokenizer with the input string and sets the position.
     Tokenizer(String input) {
+        this(input, true);
+    }
+
+    // Constructor: tables can switch off the character class tables, to compare both scanners.
+    // Without them every character is classified with the Character methods.
+    Tokenizer(String input, boolean tables) {
         this.input = input;
         this.pos = 0;
-        this.line = 1;    // Starts from the first line.
-        this.column = 1;  // Starts from the first column.
+        this.tables = tables;
+    }
+
+
+    // Main method for tokenizing the input into a list of tokens, the first error is thrown as a TokenizerException.
+    TokenBuffer tokenize() {
+        return tokenize(null);
+    }
+
+    // Tokenizes the input and adds every error to diagnostics instead of stopping at the first one.
+    // After an error the tokenizer skips the bad input and continues, so the tokens can still be compiled.
+    // The tokens are stored in a TokenBuffer.
+    TokenBuffer tokenize(List<Diagnostic> diagnostics) {
+        ScriptEvents.Tokenize event = new ScriptEvents.Tokenize();
+        event.begin();
+        int errorCount = diagnostics == null ? 0 : diagnostics.size();
+        TokenBuffer tokens;
+        try {
+            tokens = scan(diagnostics);
+        } catch (TokenizerException e) {
+            ScriptEvents.error("tokenize", e.diagnostic);
+            throw e;
+        }
+        if (diagnostics != null) {
+            for (int i = errorCount; i < diagnostics.size(); i++) {
+                ScriptEvents.error("tokenize", diagnostics.get(i));
+            }
+        }
+        if (event.shouldCommit()) {
+            event.sourceSize = input.length();
+            event.tokenCount = tokens.size();
+            event.errorCount = diagnostics == null ? 0 : diagnostics.size() - errorCount;
+            event.commit();
+        }
+        return tokens;
     }
 
+    // Tokenizes the input, interpolations are scanned with it too, so they are not recorded as JFR events.
+    private TokenBuffer scan(List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        this.lines = LineIndex.of(input); // Positions are resolved with it only when they are needed.
+        TokenBuffer tokens = new TokenBuffer(lines); // Buffer to store the generated tokens.
+        if (tables) {
+            scanWithTables(tokens);
+        } else {
+            scanWithCharacterMethods(tokens);
+        }
+        // Add an end-of-file (EOF) token to indicate the end of the input stream.
+        tokens.addFixed(EOF, pos, 0);
+        tokens.trimToSize();
+        return tokens;
+    }
 
-    // Main method for tokenizing the input into a list of tokens.
-    List<Token> tokenize() {
-        List<Token> tokens = new ArrayList<>(); // List to store the generated tokens.
+    // Scans the input with the character class tables. Only characters outside ASCII are classified
+    // with the Character methods, and keywords are found with the perfect hash without building a string.
+    // Tokens go into the buffer by kind, without a Token object.
+    private void scanWithTables(TokenBuffer tokens) {
+        int length = input.length();
+        while (pos < length) {
+            char current = input.charAt(pos);
+            switch (current < 128 ? CLASSES[current] : unicodeClass(current)) {
+                case WHITESPACE -> skipWhitespace();
+                case SLASH -> {
+                    char next = peek(1);
+                    if (next == '/') {
+                        consumeSingleLineComment();
+                    } else if (next == '*') {
+                        consumeMultiLineComment();
+                    } else {
+                        scanOperator(tokens);
+                    }
+                }
+                case QUOTE -> tokenizeString(tokens);
+                case DIGIT -> scanNumber(tokens);
+                case LETTER -> scanIdentifier(tokens);
+                case DOT -> {
+                    if (peek(1) == '.') {
+                        Token range = tokenizeRangeOperator();
+                        if (range != null) {
+                            tokens.add(range);
+                        }
+                    } else {
+                        tokens.addFixed(SINGLE_KINDS[current], pos++, 1);
+                    }
+                }
+                case OPERATOR -> scanOperator(tokens);
+                case PUNCTUATION -> tokens.addFixed(SINGLE_KINDS[current], pos++, 1);
+                default -> {
+                    error("Unexpected character: %s", pos, current);
+                    pos++; // The character is skipped.
+                }
+            }
+        }
+    }
 
+    // Scans the input character by character with the Character methods.
+    private void scanWithCharacterMethods(TokenBuffer tokens) {
         // Iterating through the input until the end is reached.
         while (pos < input.length()) {
             char current = peek(0); // Peek at the current character without advancing.
 
             if (Character.isWhitespace(current)) {
-                consumeWhitespace(); // Handle whitespace and update line/column information.
+                consumeWhitespace(); // Skip whitespace.
             } else if (current == '/' && peek(1) == '/') {
                 consumeSingleLineComment(); // Skip single-line comments starting with `//`.
             } else if (current == '/' && peek(1) == '*') {
                 consumeMultiLineComment(); // Skip multi-line comments enclosed in `/* */`.
             } else if (current == '"' || current == '\'') {
-                tokens.add(tokenizeString()); // Extract and tokenize string literals.
+                tokenizeString(tokens); // Extract and tokenize string literals.
             } else if (Character.isDigit(current)) {
                 tokens.add(tokenizeNumber());// Extract and tokenize numeric literals.
             } else if (isIdentifierStart(current)) {
                 tokens.add(tokenizeIdentifier()); // Extract and tokenize identifiers or keywords.
+            } else if (current == '.' && peek(1) == '.') {
+                Token range = tokenizeRangeOperator(); // Extract range operators `...` and `..<`.
+                if (range != null) {
+                    tokens.add(range);
+                }
             } else if (isOperatorStart(current)) {
                 tokens.add(tokenizeOperator()); // Extract and tokenize operators.
             } else if (isPunctuation(current)) {
                 // Tokenize punctuation characters (e.g., '(', ')', ';', etc.).
-                tokens.add(new Token("PUNCTUATION", String.valueOf(consumeChar()), line, column - 1));
+                tokens.add(new Token("PUNCTUATION", String.valueOf(consumeChar()), pos - 1, lines));
             } else {
-                // Throw TokenizeException which extends RuntimeException.
-                throw new TokenizerException("Unexpected character: " + current, line, column);
+                // Report the error, or throw TokenizeException which extends RuntimeException.
+                error("Unexpected character: %s", pos, current);
+                consumeChar(); // The character is skipped.
             }
         }
-        // Add an end-of-file (EOF) token to indicate the end of the input stream.
-        tokens.add(new Token("EOF", "", line, column));
-        return tokens;
+    }
+
+    // Returns the class of a character outside ASCII: only whitespace, digits and letters have one.
+    private static byte unicodeClass(char c) {
+        if (Character.isWhitespace(c)) {
+            return WHITESPACE;
+        }
+        if (Character.isDigit(c)) {
+            return DIGIT;
+        }
+        return Character.isLetter(c) ? LETTER : OTHER;
+    }
+
+    // Returns the slot of a keyword in KEYWORD_SLOTS.
+    private static int keywordSlot(char first, int length, int multiplier) {
+        return (first * multiplier + length) & (KEYWORD_SLOTS.length - 1);
+    }
+
+    // Returns the smallest multiplier that gives every keyword its own slot.
+    private static int keywordMultiplier() {
+        for (int multiplier = 1; multiplier < 1024; multiplier++) {
+            boolean[] used = new boolean[KEYWORD_SLOTS.length];
+            boolean perfect = true;
+            for (String keyword : KEYWORDS) {
+                int slot = keywordSlot(keyword.charAt(0), keyword.length(), multiplier);
+                perfect &= !used[slot];
+                used[slot] = true;
+            }
+            if (perfect) {
+                return multiplier;
+            }
+        }
+        throw new IllegalStateException("No perfect hash for the keywords");
     }
 
     // Checks if a character can start an identifier (letters, underscore, or dollar sign).
@@ -90,40 +288,101 @@ class Tokenizer {
 
     // Checks if a character is punctuation (common punctuation symbols).
     private boolean isPunctuation(char c) {
-        return "(){}[];,.".indexOf(c) != -1;
+        return "(){}[];,.:".indexOf(c) != -1;
     }
 
-    // checks if a string is a boolean.
-
+    // Reports an error: throws it, or when tokenizing with recovery adds it to the diagnostics.
+    private void error(String format, int offset, Object... arguments) {
+        Diagnostic diagnostic = new Diagnostic(format, offset, lines, arguments);
+        if (diagnostics == null) {
+            throw new TokenizerException(diagnostic);
+        }
+        diagnostics.add(diagnostic);
+    }
 
     // Tokenizes string literals, handling escape sequences and quoted strings.
-    private Token tokenizeString() {
-        int startColumn = column; // Record the starting column for position tracking.
+    // Literal text is interned, so equal literals share one String.
+    // A string with interpolations like "sum = \(sum)" is turned into the tokens of ("sum = " + (sum)).
+    private void tokenizeString(TokenBuffer tokens) {
+        int start = pos; // Record the starting offset for position tracking.
         char quote = consumeChar(); // Consume the opening quote (either single or double quote).
         StringBuilder value = new StringBuilder(); // Builder for the string content.
+        TokenBuffer parts = new TokenBuffer(lines); // Tokens of the interpolated parts, stays empty for plain strings.
         boolean escaped = false; // Tracks whether the current character is escaped.
 
         while (pos < input.length()) {
             char current = consumeChar();
 
-            if (escaped) {
-                value.append(parseEscapeSequence(current)); // Parse and append escape sequence.
+            if (escaped && current == '(') {
+                // Interpolation: text so far, then the embedded expression in parentheses.
+                // The added tokens cover the backslash and the parenthesis they stand for.
+                parts.add("STRING", value.toString().intern(), start, pos - 2 - start);
+                parts.add("OPERATOR", "+", pos - 2, 1);
+                parts.add("PUNCTUATION", "(", pos - 1, 1);
+                if (!tokenizeInterpolation(parts)) {
+                    return; // The error was reported, the rest of the line was skipped.
+                }
+                parts.add("PUNCTUATION", ")", pos - 1, 1);
+                parts.add("OPERATOR", "+", pos - 1, 1);
+                value.setLength(0);
+                escaped = false;
+            } else if (escaped) {
+                value.append(parseEscapeSequence(current, pos - 2)); // Parse and append escape sequence.
                 escaped = false;
             } else if (current == '\\') {
                 escaped = true; // Mark the next character as escaped.
             } else if (current == quote) {
-                // Return a STRING token when the closing quote is found.
-                return new Token("STRING", value.toString(), line, startColumn);
+                // Add a STRING token when the closing quote is found.
+                String string = value.toString().intern();
+                if (parts.isEmpty()) {
+                    tokens.addPooled(TokenBuffer.STRING, string, start, pos - start);
+                } else {
+                    // The parentheses around the parts cover the quotes.
+                    tokens.add("PUNCTUATION", "(", start, 1);
+                    tokens.append(parts, parts.size(), 0);
+                    tokens.addPooled(TokenBuffer.STRING, string, start, pos - start);
+                    tokens.add("PUNCTUATION", ")", pos - 1, 1);
+                }
+                return;
             } else {
                 value.append(current); // Append the current character to the string value.
             }
         }
-        // Throw exception that the string literal was unterminated.
-        throw new TokenizerException("Unterminated string literal", line, startColumn);
+        // Report that the string literal was unterminated, the input is consumed to its end.
+        error("Unterminated string literal", start);
     }
 
-    // Parses common escape sequences like `\n`, `\t`, and `\\`.
-    private char parseEscapeSequence(char c) {
+    // Tokenizes the expression of an interpolation into parts, the opening `\(` is already consumed.
+    // The closing `)` is consumed as well, but not added.
+    // Returns false after reporting an unterminated interpolation, then the rest of its line is skipped.
+    private boolean tokenizeInterpolation(TokenBuffer parts) {
+        int start = pos;
+        int depth = 1; // Parentheses inside the expression are allowed.
+        while (pos < input.length()) {
+            char current = consumeChar();
+            if (current == '(') {
+                depth++;
+            } else if (current == ')' && --depth == 0) {
+                List<Diagnostic> nested = new ArrayList<>();
+                TokenBuffer tokens = new Tokenizer(input.substring(start, pos - 1), tables).scan(nested);
+                // Without the EOF token of the nested tokenizer. Its offsets start at 0, they are shifted
+                // to the string's position.
+                parts.append(tokens, tokens.size() - 1, start);
+                for (Diagnostic diagnostic : nested) {
+                    error(diagnostic.format, start + diagnostic.offset, diagnostic.arguments);
+                }
+                return true;
+            } else if (current == '\n') {
+                error("Unterminated string interpolation", start);
+                return false;
+            }
+        }
+        error("Unterminated string interpolation", start);
+        return false;
+    }
+
+    // Parses common escape sequences like `\n`, `\t`, and `\\`, an unknown one stands for the character itself.
+    private char parseEscapeSequence(char c, int offset) {
         return switch (c) {
             case 'n' -> '\n';  // Newline
             case 't' -> '\t';  // Tab
@@ -131,20 +390,24 @@ class Tokenizer {
             case 'b' -> '\b';  // Backspace
             case 'f' -> '\f';  // Form feed
             case '\'', '\"', '\\' -> c; // Escaped single quote, double quote, or backslash
-            default -> throw new IllegalStateException("Unexpected escape sequence: " + c);
+            default -> {
+                error("Unexpected escape sequence: %s", offset, c);
+                yield c;
+            }
         };
     }
 
     // Tokenizes numeric literals, including integers, floating-point numbers, and scientific notation.
     private Token tokenizeNumber() {
-        int startColumn = column;
+        int start = pos;
         StringBuilder value = new StringBuilder();
         boolean hasDecimalPoint = false;
 
         while (pos < input.length()) {
             char current = peek(0);
 
-            if (current == '.' && !hasDecimalPoint) {
+            if (current == '.' && !hasDecimalPoint && Character.isDigit(peek(1))) {
+                // A dot is a decimal point only when a digit follows, so `1...5` stays a range.
                 hasDecimalPoint = true; // Mark the presence of a decimal point.
                 value.append(consumeChar());
             } else if (Character.isDigit(current)) {
@@ -166,13 +429,13 @@ class Tokenizer {
             }
         }
 
-        return new Token(hasDecimalPoint ? "FLOAT" : "INTEGER", value.toString(), line, startColumn);
+        return new Token(hasDecimalPoint ? "FLOAT" : "INTEGER", value.toString(), start, lines);
     }
 
 
     // Tokenizes identifiers or keywords.
     private Token tokenizeIdentifier() {
-        int startColumn = column;
+        int start = pos;
         StringBuilder value = new StringBuilder();
 
         while (pos < input.length() && isIdentifierPart(peek(0))) {
@@ -181,41 +444,136 @@ class Tokenizer {
 
         String identifier = value.toString();
         if (KEYWORDS.contains(identifier)) {
-            return new Token("KEYWORD", identifier, line, startColumn);
+            return new Token("KEYWORD", identifier, start, lines);
         }
 
-        return new Token("IDENTIFIER", identifier, line, startColumn);
+        return new Token("IDENTIFIER", identifier, start, lines);
     }
 
     // Tokenizes operators, prioritizing multi-character operators.
     private Token tokenizeOperator() {
-        int startColumn = column;
-        StringBuilder value = new StringBuilder();
+        int start = pos;
 
         // Try to match two-character operators first.
         if (pos + 1 < input.length()) {
             String twoChars = input.substring(pos, pos + 2);
             if (OPERATORS.containsKey(twoChars)) {
                 pos += 2;
-                column += 2;
-                return new Token("OPERATOR", twoChars, line, startColumn);
+                return new Token("OPERATOR", twoChars, start, lines);
             }
         }
 
         // Single-character operator.
         char operator = consumeChar();
-        return new Token("OPERATOR", String.valueOf(operator), line, startColumn);
+        return new Token("OPERATOR", String.valueOf(operator), start, lines);
     }
 
-    // Consumes whitespace and updates line/column tracking.
-    private void consumeWhitespace() {
-        while (pos < input.length() && Character.isWhitespace(peek(0))) {
-            char current = consumeChar();
-            if (current == '\n') {
-                line++; // Increment line count on newlines.
-                column = 1; // Reset column to 1.
+    // Scans a numeric literal like tokenizeNumber(), the value is pooled from the input in one piece.
+    private void scanNumber(TokenBuffer tokens) {
+        int start = pos;
+        boolean hasDecimalPoint = false;
+        while (pos < input.length()) {
+            if (input.charAt(pos) == '.' && !hasDecimalPoint && isDigitAt(pos + 1)) {
+                hasDecimalPoint = true; // A dot is a decimal point only when a digit follows.
+                pos++;
+            } else if (isDigitAt(pos)) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < input.length() && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (isDigitAt(pos)) {
+                pos++;
+            }
+        }
+        tokens.addSource(hasDecimalPoint ? TokenBuffer.FLOAT : TokenBuffer.INTEGER, input, start, pos);
+    }
+
+    // Scans an identifier or a keyword. Keywords are looked up with the perfect hash and compared in the input,
+    // identifiers are pooled from the input, so neither needs a new string.
+    private void scanIdentifier(TokenBuffer tokens) {
+        int start = pos;
+        pos++; // The first character was classified already.
+        while (pos < input.length()) {
+            char current = input.charAt(pos);
+            if (current < 128 ? !IDENTIFIER_PARTS[current] : !Character.isLetterOrDigit(current)) {
+                break;
+            }
+            pos++;
+        }
+        int length = pos - start;
+        char first = input.charAt(start);
+        if (first < 128) {
+            String keyword = KEYWORD_SLOTS[keywordSlot(first, length, KEYWORD_MULTIPLIER)];
+            if (keyword != null && keyword.length() == length && input.startsWith(keyword, start)) {
+                tokens.addFixed(KEYWORD_KINDS[keywordSlot(first, length, KEYWORD_MULTIPLIER)], start, length);
+                return;
             }
         }
+        tokens.addSource(TokenBuffer.IDENTIFIER, input, start, pos);
+    }
+
+    // Scans an operator with the operator DFA, the longest operator wins.
+    private void scanOperator(TokenBuffer tokens) {
+        int start = pos;
+        char first = input.charAt(pos++);
+        int[] pairs = OPERATOR_PAIRS[first];
+        if (pairs != null && pos < input.length()) {
+            char second = input.charAt(pos);
+            if (second < 128 && pairs[second] != 0) {
+                pos++;
+                tokens.addFixed(pairs[second], start, 2);
+                return;
+            }
+        }
+        tokens.addFixed(SINGLE_KINDS[first], start, 1);
+    }
+
+    // Checks if the character at an offset is a digit, false after the end of the input.
+    private boolean isDigitAt(int offset) {
+        if (offset >= input.length()) {
+            return false;
+        }
+        char c = input.charAt(offset);
+        return c < 128 ? CLASSES[c] == DIGIT : Character.isDigit(c);
+    }
+
+    // Tokenizes the closed range operator `...` and the half-open range operator `..<`.
+    // Returns null after reporting two dots that are not a range operator, they are skipped.
+    private Token tokenizeRangeOperator() {
+        int start = pos;
+        if (peek(2) == '.' || peek(2) == '<') {
+            String operator = input.substring(pos, pos + 3);
+            pos += 3;
+            return new Token("OPERATOR", operator, start, lines);
+        }
+        error("Unexpected character: .", pos + 1);
+        consumeChar();
+        consumeChar();
+        return null;
+    }
+
+    // Skips whitespace like consumeWhitespace(), ASCII whitespace is found in the table.
+    private void skipWhitespace() {
+        while (pos < input.length()) {
+            char current = input.charAt(pos);
+            if (current < 128 ? CLASSES[current] != WHITESPACE : !Character.isWhitespace(current)) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    // Consumes whitespace, newlines need no tracking because positions are offsets.
+    private void consumeWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
     }
 
     // Consumes single-line comments.
@@ -239,13 +597,12 @@ class Tokenizer {
                 consumeChar(); // Consume '/'
                 return;
             }
-            char current = consumeChar();
-            if (current == '\n') {
-                line++; // Increment line count on newlines.
-                column = 1; // Reset column to 1.
-            }
+            consumeChar();
+        }
+        if (pos < input.length()) {
+            consumeChar(); // The last character of the input.
         }
-         throw new TokenizerException("Unterminated multi-line comment", line, column);
+        error("Unterminated multi-line comment", pos);
     }
 
     // Peeks at a character ahead of the current position without consuming it.
@@ -256,10 +613,8 @@ class Tokenizer {
         return input.charAt(pos + ahead);
     }
 
-    // Consumes the current character and advances the position and column.
+    // Consumes the current character and advances the position.
     private char consumeChar() {
-        char c = input.charAt(pos++);
-        column++;
-        return c;
+        return input.charAt(pos++);
     }
 }
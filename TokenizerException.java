@@ -1,11 +1,19 @@
+// Error found by the tokenizer. Like all script errors it does not capture a stack trace,
+// and the message is only formatted when it is read.
 class TokenizerException extends RuntimeException {
-    final int line;
-    final int column;
+    final Diagnostic diagnostic;
+
+    TokenizerException(Diagnostic diagnostic) {
+        super(null, null, false, false);
+        this.diagnostic = diagnostic;
+    }
 
     TokenizerException(String message, int line, int column) {
-        super(String.format("Error at line %d, column %d: %s", line, column, message));
-        this.line = line;
-        this.column = column;
+        this(new Diagnostic(message, line, column));
     }
-}
 
+    @Override
+    public String getMessage() {
+        return diagnostic.render();
+    }
+}